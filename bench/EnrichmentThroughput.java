@@ -0,0 +1,129 @@
+/*
+  EnrichmentThroughput: Customers enriched per second from a slow lookup service, sequential vs parallel()
+  vs Enrichment.
+
+  The service is a local stub: every request sleeps bench.latency.ms (jittered between half and one and a half
+  times that), one request in SLOW_EVERY takes SLOW_MS (to trip the timeout), and one in FAIL_EVERY throws.
+  A batch request costs the same latency as a single one, the way a real "score these 32 customers"
+  call costs one round trip.  Each variant pulls customers for the measurement window and counts what
+  comes out:
+      map       - custs.stream().map(stub::score), one request at a time
+      parallel  - the same map on a parallel stream: as many requests at a time as commonPool has workers
+      enrich    - Enrichment.of(stub::score) with N requests in flight (input or completion order)
+      batch     - Enrichment.ofBatches(stub::scores), 32 customers per request
+  Prints customers/s, results that were ok / failed / timed out, and the speedup over map.
+
+  Run: java -cp bin EnrichmentThroughput   (-Dbench.latency.ms=2 -Dbench.timeout.ms=50, -Dbench.measure.ms as in RecipeBenchmarks)  */
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+public class EnrichmentThroughput {
+	static final long LATENCY_MS = Long.getLong("bench.latency.ms", 2);
+	static final long TIMEOUT_MS = Long.getLong("bench.timeout.ms", 50);
+	static final long SLOW_MS = 4 * TIMEOUT_MS;
+	static final int SLOW_EVERY = 1000;
+	static final int FAIL_EVERY = 500;
+
+	//The stand-in for the credit score service
+	static final class ScoreStub {
+		private final AtomicLong requests = new AtomicLong();
+
+		int score(LambdasAndStreams.Customer c) {
+			call();
+			return 300 + c.getAge() * 6;
+		}
+
+		List<Integer> scores(List<LambdasAndStreams.Customer> custs) {
+			call();
+			List<Integer> out = new ArrayList<Integer>(custs.size());
+			for (LambdasAndStreams.Customer c : custs) {
+				out.add(300 + c.getAge() * 6);
+			}
+			return out;
+		}
+
+		private void call() {
+			long n = requests.incrementAndGet();
+			long sleep = n % SLOW_EVERY == 0 ? SLOW_MS
+			           : LATENCY_MS / 2 + ThreadLocalRandom.current().nextLong(LATENCY_MS + 1);
+			try {
+				Thread.sleep(sleep);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException("Request cancelled");
+			}
+			if (n % FAIL_EVERY == 0) {
+				throw new IllegalStateException("Service unavailable");
+			}
+		}
+	}
+
+	public static void main(String[] args) {
+		List<LambdasAndStreams.Customer> custs = RecipeBenchmarks.randomCustomers(10_000, 3);
+		ScoreStub stub = new ScoreStub();
+		System.out.printf("Lookups on %s, %d ms latency, %d ms timeout%n",
+		                  Enrichment.usesVirtualThreads() ? "virtual threads" : "a cached daemon thread pool", LATENCY_MS, TIMEOUT_MS);
+		System.out.printf("%-10s %-10s %8s %14s %10s %10s %10s %8s%n", "variant", "order", "inflight", "customers/s", "ok", "failed", "timed out", "speedup");
+
+		double base = run("map", "input", 1, custs, s -> s.map(c -> result(c, stub::score)));
+		int cores = Runtime.getRuntime().availableProcessors();
+		run("parallel", "any", cores, custs, s -> s.parallel().map(c -> result(c, stub::score)), base);
+		for (int inFlight : new int[] {16, 64, 256, 1024}) {
+			Enrichment<LambdasAndStreams.Customer,Integer> e = Enrichment.of(stub::score).concurrency(inFlight)
+			                                                             .timeout(TIMEOUT_MS, TimeUnit.MILLISECONDS);
+			run("enrich", "input", inFlight, custs, e::apply, base);
+		}
+		Enrichment<LambdasAndStreams.Customer,Integer> any = Enrichment.of(stub::score).concurrency(256)
+		                                                               .timeout(TIMEOUT_MS, TimeUnit.MILLISECONDS)
+		                                                               .order(Enrichment.Order.COMPLETION);
+		run("enrich", "completion", 256, custs, any::apply, base);
+		for (int inFlight : new int[] {16, 64}) {
+			Enrichment<LambdasAndStreams.Customer,Integer> batch = Enrichment.ofBatches(stub::scores).batchSize(32).concurrency(inFlight)
+			                                                                 .timeout(TIMEOUT_MS, TimeUnit.MILLISECONDS);
+			run("batch 32", "input", inFlight, custs, batch::apply, base);
+		}
+	}
+
+	//What map() has to do by hand to survive a failing lookup
+	static Enrichment.Result<LambdasAndStreams.Customer,Integer> result(LambdasAndStreams.Customer c,
+	                                                                   Function<LambdasAndStreams.Customer,Integer> lookup) {
+		try {
+			return new Enrichment.Result<LambdasAndStreams.Customer,Integer>(c, lookup.apply(c), null);
+		} catch (RuntimeException e) {
+			return new Enrichment.Result<LambdasAndStreams.Customer,Integer>(c, null, e);
+		}
+	}
+
+	static double run(String name, String order, int inFlight, List<LambdasAndStreams.Customer> custs,
+	                  Function<Stream<LambdasAndStreams.Customer>,Stream<Enrichment.Result<LambdasAndStreams.Customer,Integer>>> stage) {
+		return run(name, order, inFlight, custs, stage, 0);
+	}
+
+	//Feeds customers (round and round the list) until the window closes, then lets the stage drain
+	static double run(String name, String order, int inFlight, List<LambdasAndStreams.Customer> custs,
+	                  Function<Stream<LambdasAndStreams.Customer>,Stream<Enrichment.Result<LambdasAndStreams.Customer,Integer>>> stage,
+	                  double base) {
+		long window = RecipeBenchmarks.MEASURE_MS * 1_000_000L;
+		long start = System.nanoTime();
+		long stopAt = start + window;
+		AtomicInteger next = new AtomicInteger();
+		Stream<LambdasAndStreams.Customer> source = Stream.generate(() -> custs.get(Math.floorMod(next.getAndIncrement(), custs.size())))
+		                                                  .takeWhile(c -> System.nanoTime() < stopAt);
+		LongAdder ok = new LongAdder(), failed = new LongAdder(), timedOut = new LongAdder();
+		try (Stream<Enrichment.Result<LambdasAndStreams.Customer,Integer>> results = stage.apply(source)) {
+			results.forEach(r -> (r.isOk() ? ok : r.isTimedOut() ? timedOut : failed).increment());
+		}
+		double secs = (System.nanoTime() - start) / 1e9;
+		double perSec = (ok.sum() + failed.sum() + timedOut.sum()) / secs;
+		System.out.printf("%-10s %-10s %8d %14.0f %10d %10d %10d %8s%n", name, order, inFlight, perSec, ok.sum(), failed.sum(), timedOut.sum(),
+		                  base == 0 ? "1.0" : String.format("%.1f", perSec / base));
+		return perSec;
+	}
+}
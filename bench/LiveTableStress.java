@@ -0,0 +1,192 @@
+/*
+  LiveTableStress: Readers and writers hammering one customer table at the same time.
+
+  Compares LiveCustomerTable against Hashtable and Collections.synchronizedMap(new HashMap()) (the two
+  tables the tutorial has on hand).  Every thread runs for the measurement window doing, per iteration:
+      reader - get() of a random key, and every QUERY_EVERY gets a "key < 100" range query over the table
+      writer - put() of a random key with a new Customer
+  The range query on the locking maps has to hold the map's lock for the whole scan (that is what
+  synchronizedMap's javadoc asks for), which is exactly what stalls everybody else.
+  Prints reads/s, writes/s and queries/s for each table and reader/writer mix.
+
+  Then the cost of a single-row put() on LiveCustomerTable as the table grows (every write copies one stripe
+  and the Root), with the default 256 stripes and with LiveCustomerTable.stripesFor(rows): writes/s and
+  bytes allocated per write from one writer thread, and writes/s from every thread at once (they all share
+  the one Root CAS).  Rows for this part are up to -Dbench.live.rows.max (default 16M; needs about 24 bytes
+  of heap per row, the Customers themselves are shared).
+
+  Run: java -Xmx4g -cp bin LiveTableStress [tableSize] [threads]   (-Dbench.measure.ms as in RecipeBenchmarks)  */
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Hashtable;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+public class LiveTableStress {
+	static final int QUERY_EVERY = 1000;
+	static final int QUERY_LIMIT = 100;
+	static final int ROWS_MAX = Integer.getInteger("bench.live.rows.max", 1 << 24);
+
+	//The operations the stress test needs, over each kind of table
+	interface Table {
+		LambdasAndStreams.Customer get(int key);
+		void put(int key, LambdasAndStreams.Customer c);
+		int rangeQuery(int limit);
+	}
+
+	public static void main(String[] args) throws InterruptedException {
+		int size = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+		int threads = args.length > 1 ? Integer.parseInt(args[1]) : Math.max(4, Runtime.getRuntime().availableProcessors());
+		HashMap<Integer,LambdasAndStreams.Customer> initial = RecipeBenchmarks.customerTable(size, 13);
+		List<LambdasAndStreams.Customer> fresh = RecipeBenchmarks.randomCustomers(1024, 99);
+
+		System.out.printf("%-14s %8s %8s %14s %14s %14s%n", "table", "readers", "writers", "reads/s", "writes/s", "queries/s");
+		for (int writers : new int[] {1, threads / 2}) {
+			int readers = threads - writers;
+			run("Hashtable", locking(new Hashtable<Integer,LambdasAndStreams.Customer>(initial)), size, readers, writers, fresh);
+			run("synchronized", locking(Collections.synchronizedMap(new HashMap<Integer,LambdasAndStreams.Customer>(initial))), size, readers, writers, fresh);
+			run("live", live(LiveCustomerTable.of(initial)), size, readers, writers, fresh);
+		}
+
+		System.out.printf("%n%-12s %8s %16s %14s %18s%n", "rows", "stripes", "writes/s (1 thr)", "B/write", "writes/s (" + threads + " thr)");
+		for (int rows = 1 << 16; rows <= ROWS_MAX; rows <<= 2) {
+			for (int stripes : new int[] {LiveCustomerTable.DEFAULT_STRIPES, LiveCustomerTable.stripesFor(rows)}) {
+				writeCost(rows, stripes, threads, fresh);
+				if (stripes == LiveCustomerTable.stripesFor(rows)) {
+					break;
+				}
+			}
+		}
+	}
+
+	//rows keys, all pointing at the same 1024 Customers, loaded in batches of 64K
+	static LiveCustomerTable filled(int rows, int stripes, List<LambdasAndStreams.Customer> fresh) {
+		LiveCustomerTable table = new LiveCustomerTable(stripes);
+		for (int from = 0; from < rows; from += 1 << 16) {
+			LiveCustomerTable.Batch batch = table.batch();
+			for (int key = from; key < Math.min(rows, from + (1 << 16)); key++) {
+				batch.put(key, fresh.get(key & 1023));
+			}
+			batch.commit();
+		}
+		return table;
+	}
+
+	static void writeCost(int rows, int stripes, int threads, List<LambdasAndStreams.Customer> fresh) throws InterruptedException {
+		LiveCustomerTable table = filled(rows, stripes, fresh);
+		long window = RecipeBenchmarks.MEASURE_MS * 1_000_000L;
+		long alloc0 = RecipeBenchmarks.allocatedBytes();
+		long start = System.nanoTime(), writes = 0;
+		ThreadLocalRandom r = ThreadLocalRandom.current();
+		while ((writes & 255) != 0 || System.nanoTime() - start < window) {
+			int key = r.nextInt(rows);
+			table.put(key, fresh.get(r.nextInt(1024)));
+			writes++;
+		}
+		double single = writes / ((System.nanoTime() - start) / 1e9);
+		long bytes = alloc0 < 0 ? -1 : (RecipeBenchmarks.allocatedBytes() - alloc0) / writes;
+
+		LongAdder all = new LongAdder();
+		long stopAt = System.nanoTime() + window;
+		Thread[] writers = new Thread[threads];
+		for (int t = 0; t < threads; t++) {
+			writers[t] = new Thread(() -> {
+				ThreadLocalRandom tr = ThreadLocalRandom.current();
+				long done = 0;
+				while ((done & 255) != 0 || System.nanoTime() < stopAt) {
+					int key = tr.nextInt(rows);
+					table.put(key, fresh.get(tr.nextInt(1024)));
+					done++;
+				}
+				all.add(done);
+			});
+			writers[t].start();
+		}
+		for (Thread t : writers) {
+			t.join();
+		}
+		System.out.printf("%-12d %8d %16.0f %14d %18.0f%n", rows, stripes, single, bytes, all.sum() / (window / 1e9));
+	}
+
+	static Table locking(Map<Integer,LambdasAndStreams.Customer> map) {
+		return new Table() {
+			public LambdasAndStreams.Customer get(int key) {
+				return map.get(key);
+			}
+
+			public void put(int key, LambdasAndStreams.Customer c) {
+				map.put(key, c);
+			}
+
+			public int rangeQuery(int limit) {
+				synchronized (map) {
+					return (int) map.entrySet().stream().filter(e -> e.getKey() < limit).count();
+				}
+			}
+		};
+	}
+
+	static Table live(LiveCustomerTable table) {
+		return new Table() {
+			public LambdasAndStreams.Customer get(int key) {
+				return table.get(key);
+			}
+
+			public void put(int key, LambdasAndStreams.Customer c) {
+				table.put(key, c);
+			}
+
+			public int rangeQuery(int limit) {
+				return table.snapshot().range(0, limit).size();
+			}
+		};
+	}
+
+	static void run(String name, Table table, int size, int readers, int writers, List<LambdasAndStreams.Customer> fresh)
+	        throws InterruptedException {
+		LongAdder reads = new LongAdder(), writes = new LongAdder(), queries = new LongAdder();
+		CountDownLatch start = new CountDownLatch(1);
+		long[] stopAt = new long[1];
+		Thread[] all = new Thread[readers + writers];
+		for (int t = 0; t < all.length; t++) {
+			boolean writer = t < writers;
+			all[t] = new Thread(() -> {
+				ThreadLocalRandom r = ThreadLocalRandom.current();
+				try {
+					start.await();
+				} catch (InterruptedException e) {
+					return;
+				}
+				long done = 0, sink = 0;
+				while ((done & 255) != 0 || System.nanoTime() < stopAt[0]) {
+					int key = r.nextInt(size);
+					if (writer) {
+						table.put(key, fresh.get(key & 1023));
+					} else if (done % QUERY_EVERY == QUERY_EVERY - 1) {
+						sink += table.rangeQuery(QUERY_LIMIT);
+						queries.increment();
+					} else {
+						LambdasAndStreams.Customer c = table.get(key);
+						sink += c == null ? 0 : c.getAge();
+					}
+					done++;
+				}
+				(writer ? writes : reads).add(done);
+				RecipeBenchmarks.sink += sink;
+			});
+			all[t].start();
+		}
+		long window = RecipeBenchmarks.MEASURE_MS * 1_000_000L;
+		stopAt[0] = System.nanoTime() + window;
+		start.countDown();
+		for (Thread t : all) {
+			t.join();
+		}
+		double secs = window / 1e9;
+		System.out.printf("%-14s %8d %8d %14.0f %14.0f %14.0f%n", name, readers, writers,
+		                  (reads.sum() - queries.sum()) / secs, writes.sum() / secs, queries.sum() / secs);
+	}
+}
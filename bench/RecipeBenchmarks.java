@@ -0,0 +1,543 @@
+/*
+  RecipeBenchmarks: Puts a price tag on every recipe in LambdasAndStreams.main.
+
+  Each recipe is measured three ways against generated inputs (1K to 10M elements by default):
+      recipe  - the code exactly as it is written in the tutorial (usually boxed)
+      loop    - the same work as a hand-written for loop
+      prim    - the primitive-stream (IntStream) equivalent
+  Some recipes have extra variants for the primitive helpers in src/ (IntList, CustomerStore, LastNameIndex, EntryRanking,
+  MappedCustomerTable, CustomerFeed, Distinct, Sorting, Aggregates, CustomerGroups, CustomerQuery, EmailDomainIndex,
+  PhoneNumbers, StreamProbe, BatchedSink, CustomerView, ...).
+  For each one we print throughput (ops/s), average time (us/op), bytes allocated per op and
+  the GC count/time spent during the measurement window.
+
+  Run (from the project root):
+      javac -d bin src/*.java bench/*.java
+      java -Xmx8g -cp bin RecipeBenchmarks                  (all default sizes)
+      java -Xmx8g -cp bin RecipeBenchmarks 1000 100000      (only these sizes)
+  Tuning: -Dbench.warmup.ms=500 -Dbench.measure.ms=1000 -Dbench.objects.max=1000000
+
+  Note: Customer and HashMap inputs are capped at bench.objects.max elements, since 10M Customer
+        objects alone need several GB of heap.  The int[] recipes run at every size.  */
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Objects;
+import java.util.Random;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+import java.util.regex.Pattern;
+import java.util.stream.*;
+
+public class RecipeBenchmarks {
+	static final int[] DEFAULT_SIZES = new int[] {1_000, 10_000, 100_000, 1_000_000, 10_000_000};
+	static final long WARMUP_MS = Long.getLong("bench.warmup.ms", 500);
+	static final long MEASURE_MS = Long.getLong("bench.measure.ms", 1000);
+	static final int OBJECTS_MAX = Integer.getInteger("bench.objects.max", 1_000_000);
+
+	//Every result is folded into this field so the JIT can't throw the work away (our poor man's Blackhole).
+	static volatile long sink;
+	//Accepts and drops every byte, so printing recipes measure formatting and locking, not the terminal
+	static final OutputStream DISCARD = new OutputStream() {
+		@Override
+		public void write(int b) {
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) {
+		}
+	};
+
+	public static void main(String[] args) {
+		int[] sizes = args.length > 0 ? Arrays.stream(args).mapToInt(Integer::parseInt).toArray() : DEFAULT_SIZES;
+		printHeader();
+		for (int n : sizes) {
+			runIntRecipes(n);
+			if (n <= OBJECTS_MAX) {
+				runCustomerRecipes(n);
+				runMapRecipes(n);
+			}
+		}
+	}
+
+	static void runIntRecipes(int n) {
+		int[] arr = randomInts(n, n, 42);
+		ArrayList<Integer> al = Arrays.stream(arr).boxed().collect(Collectors.toCollection(ArrayList::new));
+
+		//min/max
+		measure("max", "recipe", n, () -> al.stream().max(Integer::compareTo).orElse(-1));
+		measure("max", "loop", n, () -> {
+			int m = Integer.MIN_VALUE;
+			for (int v : arr) { if (v > m) m = v; }
+			return m;
+		});
+		measure("max", "prim", n, () -> Arrays.stream(arr).max().orElse(-1));
+		measure("min", "recipe", n, () -> al.stream().min(Integer::compareTo).orElse(-1));
+		measure("min", "loop", n, () -> {
+			int m = Integer.MAX_VALUE;
+			for (int v : arr) { if (v < m) m = v; }
+			return m;
+		});
+		measure("min", "prim", n, () -> Arrays.stream(arr).min().orElse(-1));
+		measure("count+min+max", "recipe", n, () -> Arrays.stream(arr).count() + Arrays.stream(arr).min().orElse(-1) + Arrays.stream(arr).max().orElse(-1));
+		measure("count+min+max", "prim", n, () -> Arrays.stream(arr).summaryStatistics().getMax());
+		measure("count+min+max", "fused", n, () -> Aggregates.of(arr).max());
+		measure("count+min+max", "fused par", n, () -> Aggregates.ofParallel(arr).max());
+
+		//int[] -> ArrayList<Integer> -> int[] (converted2 / prim_integer_arr)
+		measure("boxed round-trip", "recipe", n, () -> {
+			ArrayList<Integer> boxed = Arrays.stream(arr).boxed().collect(Collectors.toCollection(ArrayList::new));
+			return boxed.stream().mapToInt(v -> v).toArray().length;
+		});
+		measure("boxed round-trip", "loop", n, () -> {
+			ArrayList<Integer> boxed = new ArrayList<Integer>(arr.length);
+			for (int v : arr) { boxed.add(v); }
+			int[] back = new int[boxed.size()];
+			for (int i = 0; i < back.length; i++) { back[i] = boxed.get(i); }
+			return back.length;
+		});
+		measure("boxed round-trip", "prim", n, () -> Arrays.stream(arr).toArray().length);
+		measure("boxed round-trip", "IntList", n, () -> IntList.from(arr).toArray().length);
+
+		//distinct
+		measure("distinct", "recipe", n, () -> Arrays.stream(arr).boxed().distinct().collect(Collectors.toCollection(ArrayList::new)).size());
+		measure("distinct", "loop", n, () -> {
+			HashSet<Integer> seen = new HashSet<Integer>();
+			int[] out = new int[arr.length];
+			int k = 0;
+			for (int v : arr) { if (seen.add(v)) out[k++] = v; }
+			return k;
+		});
+		measure("distinct", "prim", n, () -> Arrays.stream(arr).distinct().toArray().length);
+		measure("distinct", "IntList", n, () -> IntList.from(arr).distinct().size());
+		measure("distinct", "bitset", n, () -> Distinct.of(arr, Distinct.Mode.BITSET, true).length);
+		measure("distinct", "hash", n, () -> Distinct.of(arr, Distinct.Mode.HASH, true).length);
+		measure("distinct", "sorted", n, () -> Distinct.of(arr, Distinct.Mode.SORTED, false).length);
+		int[] sparse = new Random(3).ints(n).toArray();
+		measure("distinct sparse", "prim", n, () -> Arrays.stream(sparse).distinct().toArray().length);
+		measure("distinct sparse", "auto", n, () -> Distinct.of(sparse).length);
+		String[] strs = Arrays.stream(arr).mapToObj(v -> "event-" + (v % Math.max(1, n / 4))).toArray(String[]::new);
+		measure("distinct String[]", "recipe", n, () -> Arrays.stream(strs).distinct().collect(Collectors.toCollection(ArrayList::new)).size());
+		measure("distinct String[]", "hash", n, () -> Distinct.of(strs, true).length);
+
+		//map v -> v*2
+		measure("map*2", "recipe", n, () -> al.stream().map(v -> v*2).collect(Collectors.toCollection(ArrayList::new)).size());
+		measure("map*2", "loop", n, () -> {
+			int[] out = new int[arr.length];
+			for (int i = 0; i < arr.length; i++) { out[i] = arr[i]*2; }
+			return out[out.length - 1];
+		});
+		measure("map*2", "prim", n, () -> Arrays.stream(arr).map(v -> v*2).toArray().length);
+		measure("map*2", "IntList", n, () -> IntList.from(arr).map(v -> v*2).size());
+
+		//forEach(x -> System.out.print(x + " ")), printed into a stream that throws the bytes away
+		PrintStream discardOut = new PrintStream(DISCARD, false);
+		measure("print ints", "recipe", n, () -> {
+			al.forEach(x -> discardOut.print(x + " "));
+			return al.size();
+		});
+		measure("print ints", "sink", n, () -> {
+			BatchedSink out = BatchedSink.toStream(DISCARD);
+			Arrays.stream(arr).forEach(out);
+			out.flush();
+			return arr.length;
+		});
+
+		//filter evens
+		measure("filter even", "recipe", n, () -> al.stream().filter(v -> v%2 == 0).collect(Collectors.toCollection(ArrayList::new)).size());
+		measure("filter even", "loop", n, () -> {
+			int[] out = new int[arr.length];
+			int k = 0;
+			for (int v : arr) { if (v%2 == 0) out[k++] = v; }
+			return Arrays.copyOf(out, k).length;
+		});
+		measure("filter even", "prim", n, () -> Arrays.stream(arr).filter(v -> v%2 == 0).toArray().length);
+
+		//sort greatest to least (unsorted_list / unsorted_al)
+		measure("sort desc", "recipe", n, () -> al.stream().sorted(Comparator.reverseOrder()).collect(Collectors.toCollection(ArrayList::new)).size());
+		measure("sort desc", "loop", n, () -> {
+			int[] out = arr.clone();
+			Arrays.sort(out);
+			for (int i = 0, j = out.length - 1; i < j; i++, j--) { int t = out[i]; out[i] = out[j]; out[j] = t; }
+			return out[0];
+		});
+		measure("sort desc", "prim", n, () -> Arrays.stream(arr).map(v -> -v).sorted().map(v -> -v).toArray()[0]);
+		measure("sort desc", "sorting", n, () -> Sorting.sortedCopy(arr, true)[0]);
+		measure("sort asc", "prim", n, () -> Arrays.stream(arr).sorted().toArray()[0]);
+		measure("sort asc", "radix", n, () -> {
+			int[] out = arr.clone();
+			Sorting.radixSort(out);
+			return out[0];
+		});
+	}
+
+	static void runCustomerRecipes(int n) {
+		List<LambdasAndStreams.Customer> custs = randomCustomers(n, 7);
+		LambdasAndStreams.Customer def_customer = new LambdasAndStreams.Customer("Default Dude","1234567890",-1,"DefaultDude@Default.com");
+
+		measure("customer max age", "recipe", n, () -> custs.stream().max((p1,p2) -> p1.getAge() > p2.getAge() ? 1 : -1).orElse(def_customer).getAge());
+		measure("customer max age", "loop", n, () -> {
+			LambdasAndStreams.Customer best = def_customer;
+			for (LambdasAndStreams.Customer c : custs) { if (c.getAge() > best.getAge()) best = c; }
+			return best.getAge();
+		});
+		measure("customer max age", "prim", n, () -> IntStream.range(0, custs.size())
+		                                                         .reduce((i,j) -> custs.get(j).getAge() > custs.get(i).getAge() ? j : i)
+		                                                         .orElse(-1));
+
+		measure("customer min age", "recipe", n, () -> custs.stream().min(Comparator.comparing(LambdasAndStreams.Customer::getAge)).orElse(def_customer).getAge());
+		measure("customer min age", "loop", n, () -> {
+			LambdasAndStreams.Customer best = def_customer;
+			int m = Integer.MAX_VALUE;
+			for (LambdasAndStreams.Customer c : custs) { if (c.getAge() < m) { m = c.getAge(); best = c; } }
+			return best.getAge();
+		});
+		measure("customer min age", "prim", n, () -> custs.stream().mapToInt(LambdasAndStreams.Customer::getAge).min().orElse(-1));
+
+		measure("customers sort by age", "recipe", n, () -> custs.stream().sorted(Comparator.comparing(LambdasAndStreams.Customer::getAge))
+		                                                      .collect(Collectors.toList()).size());
+		measure("customers sort by age", "sorting", n, () -> Sorting.sortByAge(custs, false).size());
+		measure("customers sort by name", "recipe", n, () -> custs.stream().sorted(Comparator.comparing(LambdasAndStreams.Customer::getName))
+		                                                       .collect(Collectors.toList()).size());
+		measure("customers sort by name", "sorting", n, () -> Sorting.sortByName(custs, false).size());
+
+		measure("customer age+name stats", "recipe", n, () -> {
+			long acc = custs.stream().max(Comparator.comparing(LambdasAndStreams.Customer::getAge)).get().getAge();
+			acc += custs.stream().min(Comparator.comparing(LambdasAndStreams.Customer::getAge)).get().getAge();
+			acc += custs.stream().max(Comparator.comparing(LambdasAndStreams.Customer::getName)).get().getAge();
+			return acc + custs.stream().min(Comparator.comparing(LambdasAndStreams.Customer::getName)).get().getAge();
+		});
+		measure("customer age+name stats", "fused", n, () -> {
+			Aggregates.Stats<LambdasAndStreams.Customer,String> stats = Aggregates.of(custs, LambdasAndStreams.Customer::getAge,
+			                                                                          LambdasAndStreams.Customer::getName);
+			return stats.ints().max() + stats.ints().min() + stats.keys().max().getAge() + stats.keys().min().getAge();
+		});
+
+		PrintStream discardCusts = new PrintStream(DISCARD, false);
+		measure("print emails", "recipe", n, () -> {
+			custs.forEach(c -> discardCusts.print(c.getEmail() != null ? c.getEmail() + " " : " NO EMAIL "));
+			return custs.size();
+		});
+		measure("print emails", "sink", n, () -> {
+			BatchedSink out = BatchedSink.toStream(DISCARD).nullPlaceholder("NO EMAIL");
+			custs.forEach(out.field(LambdasAndStreams.Customer::getEmail));
+			out.flush();
+			return custs.size();
+		});
+
+		CustomerStore store = CustomerStore.of(custs);
+		measure("customer max age", "columnar", n, () -> store.ageAt(store.maxAgeRow()));
+		measure("customers age > 30", "recipe", n, () -> custs.stream().filter(per -> per.getAge() > 30).collect(Collectors.toList()).size());
+		measure("customers age > 30", "columnar", n, () -> store.ageGreaterThan(30).cardinality());
+		measure("customers with gmail", "recipe", n, () -> custs.stream().filter(p -> p.getEmail() != null)
+		                                                      .filter(p -> p.getEmail().toLowerCase().contains("@gmail"))
+		                                                      .collect(Collectors.toList()).size());
+		measure("customers with gmail", "columnar", n, () -> store.emailDomainMatches(d -> d.startsWith("gmail")).cardinality());
+		CustomerQuery gmailQuery = CustomerQuery.compile(CustomerQuery.contains(CustomerQuery.Field.EMAIL, "@gmail"));
+		measure("customers with gmail", "query", n, () -> gmailQuery.filter(custs).size());
+		EmailDomainIndex domains = EmailDomainIndex.of(custs);
+		measure("customers with gmail", "index", n, () -> domains.domain("gmail.com").length);
+		StreamProbe probe = StreamProbe.of("bench customers with gmail");
+		measure("customers with gmail", "probe off", n, () -> custs.stream().filter(probe.filter("has email", p -> p.getEmail() != null))
+		                                                          .filter(probe.filter("gmail", p -> p.getEmail().toLowerCase().contains("@gmail")))
+		                                                          .collect(Collectors.toList()).size());
+		StreamProbe.setEnabled(true);
+		measure("customers with gmail", "probe on", n, () -> custs.stream().filter(probe.filter("has email", p -> p.getEmail() != null))
+		                                                         .filter(probe.filter("gmail", p -> p.getEmail().toLowerCase().contains("@gmail")))
+		                                                         .collect(Collectors.toList()).size());
+		StreamProbe.setEnabled(false);
+		measure("customers *.com", "recipe", n, () -> custs.stream().filter(p -> p.getEmail() != null && p.getEmail().toLowerCase().endsWith(".com")).count());
+		measure("customers *.com", "index", n, () -> domains.suffix("*.com").length);
+		measure("age < 40 and gmail", "recipe", n, () -> custs.stream().filter(per -> per.getEmail() != null)
+		                                                     .filter(per -> per.getAge() < 40 && per.getEmail().toLowerCase().contains("@gmail"))
+		                                                     .collect(Collectors.toCollection(ArrayList::new)).size());
+		//Written string-test-first on purpose: the plan should move the age test to the front on its own
+		CustomerQuery less40Gmail = CustomerQuery.compile(CustomerQuery.and(CustomerQuery.contains(CustomerQuery.Field.EMAIL, "@gmail"),
+		                                                                    CustomerQuery.range(CustomerQuery.Field.AGE, Integer.MIN_VALUE, 40)));
+		measure("age < 40 and gmail", "query", n, () -> less40Gmail.filter(custs).size());
+		measure("age < 40 and gmail", "query str", n, () -> custs.stream().filter(less40Gmail).count());
+		measure("customers 10 char phone", "recipe", n, () -> custs.stream().filter(per -> per.getPhone().length() == 10)
+		                                                         .collect(Collectors.toCollection(ArrayList::new)).size());
+		measure("customers 10 char phone", "columnar", n, () -> store.validPhones().cardinality());
+		Pattern phonePattern = Pattern.compile("\\+?1?[ .-]?\\(?[2-9]\\d{2}\\)?[ .-]?\\d{3}[ .-]?\\d{4}");
+		measure("customers valid phone", "regex", n, () -> custs.stream().filter(per -> phonePattern.matcher(per.getPhone()).matches()).count());
+		measure("customers valid phone", "parse", n, () -> custs.stream().filter(per -> PhoneNumbers.isValid(per.getPhone())).count());
+		measure("customers valid phone", "batch", n, () -> PhoneNumbers.normalize(custs).validCount());
+
+		//Age stats per email domain.  groupingBy can't take a null key, so the recipe maps "no email" to a placeholder.
+		Function<LambdasAndStreams.Customer,String> domainOrNone = c -> { String d = CustomerStore.emailDomain(c.getEmail()); return d != null ? d : ""; };
+		measure("group by domain", "recipe", n, () -> custs.stream().collect(Collectors.groupingBy(domainOrNone,
+		                                                  Collectors.summarizingInt(LambdasAndStreams.Customer::getAge))).size());
+		measure("group by domain", "conc", n, () -> custs.parallelStream().collect(Collectors.groupingByConcurrent(domainOrNone,
+		                                                  Collectors.summarizingInt(LambdasAndStreams.Customer::getAge))).size());
+		measure("group by domain", "grp", n, () -> CustomerGroups.groupBy(custs, CustomerGroups.EMAIL_DOMAIN, LambdasAndStreams.Customer::getAge).size());
+		measure("group by domain", "grp par", n, () -> CustomerGroups.groupByParallel(custs, CustomerGroups.EMAIL_DOMAIN, LambdasAndStreams.Customer::getAge).size());
+		measure("group by age band", "conc", n, () -> custs.parallelStream().collect(Collectors.groupingByConcurrent(CustomerGroups.ageBand(10),
+		                                                  Collectors.summarizingInt(LambdasAndStreams.Customer::getAge))).size());
+		measure("group by age band", "grp par", n, () -> CustomerGroups.groupByParallel(custs, CustomerGroups.ageBand(10), LambdasAndStreams.Customer::getAge).size());
+
+		//custs_less_than_m: split on every call, vs the cached ParsedName, vs a sorted LastNameIndex
+		measure("last name >= n", "recipe", n, () -> custs.stream().filter(p -> p.getName().toLowerCase().split(" ")[1].compareTo("n") >= 0)
+		                                              .collect(Collectors.toList()).size());
+		measure("last name >= n", "parsed", n, () -> custs.stream().filter(p -> p.getParsedName().getLastFolded().compareTo("n") >= 0)
+		                                              .collect(Collectors.toList()).size());
+		LastNameIndex index = LastNameIndex.of(custs);
+		measure("last name >= n", "index", n, () -> index.atLeast("n").size());
+
+		//Loading: materialize a List from the CSV file vs filtering it as it streams in
+		try {
+			checkCsvRoundTrip();
+			Path csv = Files.createTempFile("customers", ".csv");
+			csv.toFile().deleteOnExit();
+			CustomerFeed.writeCsv(csv, custs);
+			measure("csv age > 30", "list", n, io(() -> {
+				List<LambdasAndStreams.Customer> all;
+				try (Stream<LambdasAndStreams.Customer> s = CustomerFeed.stream(csv)) {
+					all = s.collect(Collectors.toList());
+				}
+				return all.stream().filter(per -> per.getAge() > 30).count();
+			}));
+			measure("csv age > 30", "stream", n, io(() -> {
+				try (Stream<LambdasAndStreams.Customer> s = CustomerFeed.stream(csv)) {
+					return s.filter(per -> per.getAge() > 30).count();
+				}
+			}));
+			measure("csv age > 30", "readahead", n, io(() -> {
+				try (Stream<LambdasAndStreams.Customer> s = CustomerFeed.readAhead(csv, CustomerFeed.Format.CSV, 1024, 8)) {
+					return s.filter(per -> per.getAge() > 30).count();
+				}
+			}));
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	//Fields with commas, quotes and line breaks must come back from writeCsv() exactly as written, through both readers
+	static void checkCsvRoundTrip() throws IOException {
+		List<LambdasAndStreams.Customer> tricky = new ArrayList<LambdasAndStreams.Customer>();
+		tricky.add(new LambdasAndStreams.Customer("Smith, John", "614-123-4567", 40, "js@gmail.com"));
+		tricky.add(new LambdasAndStreams.Customer("Dwayne \"The Rock\" Johnson", "6141234567", 50, null));
+		tricky.add(new LambdasAndStreams.Customer("Line\nBreak", "614\r\n555", 30, "a\rb@aol.com"));
+		tricky.add(new LambdasAndStreams.Customer("Ends with CR\r", "\n", 20, "\"\n\""));
+		tricky.add(new LambdasAndStreams.Customer("Zo\u00eb \u00c7elik", "", 25, "zoe@bing.com"));
+		Path csv = Files.createTempFile("roundtrip", ".csv");
+		try {
+			CustomerFeed.writeCsv(csv, tricky);
+			List<LambdasAndStreams.Customer> streamed, readAhead;
+			try (Stream<LambdasAndStreams.Customer> s = CustomerFeed.stream(csv)) {
+				streamed = s.collect(Collectors.toList());
+			}
+			try (Stream<LambdasAndStreams.Customer> s = CustomerFeed.readAhead(csv, CustomerFeed.Format.CSV, 2, 2)) {
+				readAhead = s.collect(Collectors.toList());
+			}
+			for (List<LambdasAndStreams.Customer> back : Arrays.asList(streamed, readAhead)) {
+				if (back.size() != tricky.size()) {
+					throw new IllegalStateException("CSV round trip returned " + back.size() + " customers instead of " + tricky.size());
+				}
+				for (int i = 0; i < tricky.size(); i++) {
+					LambdasAndStreams.Customer a = tricky.get(i), b = back.get(i);
+					if (!Objects.equals(a.getName(), b.getName()) || !Objects.equals(a.getPhone(), b.getPhone())
+					    || a.getAge() != b.getAge() || !Objects.equals(a.getEmail(), b.getEmail())) {
+						throw new IllegalStateException("CSV round trip changed customer " + i + ": " + a.getName() + " -> " + b.getName());
+					}
+				}
+			}
+		} finally {
+			Files.delete(csv);
+		}
+	}
+
+	static void runMapRecipes(int n) {
+		HashMap<String,Integer> hm1 = new HashMap<String,Integer>();
+		int[] vals = randomInts(n, Integer.MAX_VALUE, 11);
+		for (int i = 0; i < n; i++) { hm1.put("K" + i, vals[i]); }
+
+		measure("hm1 highest value entry", "recipe", n, () -> hm1.entrySet().stream().max((v,k) -> v.getValue() > k.getValue() ? 1 : -1).get().getValue());
+		measure("hm1 highest value entry", "loop", n, () -> {
+			Entry<String,Integer> best = null;
+			for (Entry<String,Integer> e : hm1.entrySet()) { if (best == null || e.getValue() > best.getValue()) best = e; }
+			return best.getValue();
+		});
+		measure("hm1 highest value entry", "prim", n, () -> hm1.values().stream().mapToInt(Integer::intValue).max().orElse(-1));
+		measure("hm1 highest value entry", "ranking", n, () -> EntryRanking.maxByValue(hm1).get().getValue());
+		measure("hm1 top 10 by value", "recipe", n, () -> hm1.entrySet().stream().sorted(Entry.<String,Integer>comparingByValue().reversed())
+		                                                   .limit(10).collect(Collectors.toList()).size());
+		measure("hm1 top 10 by value", "ranking", n, () -> EntryRanking.topByValue(hm1, 10).size());
+		RankedMap<String> ranked = new RankedMap<String>(hm1);
+		measure("hm1 top 10 by value", "ranked", n, () -> ranked.top(10).size());
+
+		HashMap<Integer,LambdasAndStreams.Customer> cust_table = customerTable(n, 13);
+		int limit = n / 10;
+		measure("cust_table key < n/10", "recipe", n, () -> cust_table.entrySet().stream().filter(c -> c.getKey() < limit)
+		                                                  .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue, (v,k) -> k, HashMap::new)).size());
+		measure("cust_table key < n/10", "loop", n, () -> {
+			HashMap<Integer,LambdasAndStreams.Customer> out = new HashMap<Integer,LambdasAndStreams.Customer>();
+			for (Entry<Integer,LambdasAndStreams.Customer> e : cust_table.entrySet()) { if (e.getKey() < limit) out.put(e.getKey(), e.getValue()); }
+			return out.size();
+		});
+		measure("cust_table key < n/10", "prim", n, () -> cust_table.keySet().stream().mapToInt(Integer::intValue).filter(k -> k < limit).count());
+
+		//A dashboard asking "how many customers over 30?" after every single change to the table
+		LiveCustomerTable live = LiveCustomerTable.of(cust_table);
+		CustomerView.Filter over30 = CustomerView.filter(live, c -> c.getAge() > 30);
+		List<LambdasAndStreams.Customer> updates = randomCustomers(1024, 21);
+		int[] next = new int[1];
+		measure("update + count age > 30", "recipe", n, () -> {
+			int i = next[0]++ & 1023;
+			cust_table.put(i, updates.get(i));
+			return cust_table.values().stream().filter(c -> c.getAge() > 30).count();
+		});
+		measure("update + count age > 30", "view", n, () -> {
+			int i = next[0]++ & 1023;
+			live.put(i, updates.get(i));
+			return over30.size();
+		});
+		over30.detach();
+
+		//Same range query against the table saved to a memory-mapped file
+		try {
+			Path file = Files.createTempFile("customers", ".tbl");
+			file.toFile().deleteOnExit();
+			MappedCustomerTable.write(file, cust_table);
+			try (MappedCustomerTable mapped = MappedCustomerTable.open(file)) {
+				measure("cust_table key < n/10", "mapped", n, () -> mapped.range(0, limit).size());
+				measure("cust_table get(key)", "recipe", n, () -> cust_table.get(limit).getAge());
+				measure("cust_table get(key)", "mapped", n, () -> mapped.get(limit).getAge());
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	//----------------------------- Harness -----------------------------
+
+	static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+	static void printHeader() {
+		System.out.printf("%-26s %-9s %10s %14s %14s %14s %6s %8s%n",
+		                  "benchmark", "variant", "n", "ops/s", "us/op", "B/op", "gc", "gc ms");
+	}
+
+	//Runs op repeatedly for WARMUP_MS (results thrown away), then for MEASURE_MS, and prints one row.
+	static void measure(String name, String variant, int n, LongSupplier op) {
+		runFor(op, WARMUP_MS);
+		long gcCount0 = gcCount(), gcTime0 = gcTime();
+		long alloc0 = allocatedBytes();
+		long start = System.nanoTime();
+		long ops = runFor(op, MEASURE_MS);
+		long elapsed = System.nanoTime() - start;
+		long alloc = allocatedBytes() - alloc0;
+		System.out.printf("%-26s %-9s %10d %14.1f %14.3f %14s %6d %8d%n",
+		                  name, variant, n, ops * 1e9 / elapsed, elapsed / 1e3 / ops,
+		                  alloc0 < 0 ? "n/a" : String.format("%.1f", (double) alloc / ops),
+		                  gcCount() - gcCount0, gcTime() - gcTime0);
+	}
+
+	//Same warmup + measurement as measure(), but returns the average nanoseconds per op instead of printing.
+	static double nanosPerOp(LongSupplier op) {
+		runFor(op, WARMUP_MS);
+		long start = System.nanoTime();
+		long ops = runFor(op, MEASURE_MS);
+		return (double) (System.nanoTime() - start) / ops;
+	}
+
+	interface IOOp {
+		long run() throws IOException;
+	}
+
+	//Lets a benchmark body that does file I/O be passed to measure()
+	static LongSupplier io(IOOp op) {
+		return () -> {
+			try {
+				return op.run();
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		};
+	}
+
+	static long runFor(LongSupplier op, long millis) {
+		long deadline = System.nanoTime() + millis * 1_000_000L;
+		long ops = 0, acc = 0;
+		do {
+			acc += op.getAsLong();
+			ops++;
+		} while (System.nanoTime() < deadline);
+		sink += acc;
+		return ops;
+	}
+
+	//Bytes allocated by this thread so far, or -1 if the JVM doesn't track it.
+	static long allocatedBytes() {
+		if (THREADS instanceof com.sun.management.ThreadMXBean) {
+			com.sun.management.ThreadMXBean t = (com.sun.management.ThreadMXBean) THREADS;
+			if (t.isThreadAllocatedMemorySupported() && t.isThreadAllocatedMemoryEnabled()) {
+				return t.getThreadAllocatedBytes(Thread.currentThread().getId());
+			}
+		}
+		return -1;
+	}
+
+	static long gcCount() {
+		long total = 0;
+		for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) { total += Math.max(0, gc.getCollectionCount()); }
+		return total;
+	}
+
+	static long gcTime() {
+		long total = 0;
+		for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) { total += Math.max(0, gc.getCollectionTime()); }
+		return total;
+	}
+
+	//----------------------------- Input generators -----------------------------
+
+	static int[] randomInts(int n, int bound, long seed) {
+		return new Random(seed).ints(n, 0, bound).toArray();
+	}
+
+	static final String[] FIRST = new String[] {"Simon","Mark","Howard","Shelley","Gaia","Kasper","Alberto","Milo","Lewis","Ursula","Julian","Hailey"};
+	static final String[] LAST = new String[] {"Says","Smith","Stern","Maldonado","Sheppard","Conner","Fuentes","Ratcliffe","Holmes","Blackmore","Lowry","Morty"};
+	static final String[] DOMAINS = new String[] {"gmail.com","aol.com","hotmail.com","verizon.com","outlook.com","yahoo.com","protonmail.com"};
+
+	//Mirrors createCustomers(): a mix of valid/invalid phone numbers, and roughly 1 in 20 customers has no email.
+	static List<LambdasAndStreams.Customer> randomCustomers(int n, long seed) {
+		Random r = new Random(seed);
+		List<LambdasAndStreams.Customer> custs = new ArrayList<LambdasAndStreams.Customer>(n);
+		for (int i = 0; i < n; i++) {
+			String first = FIRST[r.nextInt(FIRST.length)];
+			String last = LAST[r.nextInt(LAST.length)];
+			String phone;
+			switch (r.nextInt(4)) {
+				case 0:  phone = String.format("%03d-%03d-%04d", r.nextInt(1000), r.nextInt(1000), r.nextInt(10000)); break;
+				case 1:  phone = String.valueOf(1_000_000_000L + (long) (r.nextDouble() * 8_999_999_999L)); break;
+				case 2:  phone = String.valueOf(r.nextInt(100000)); break;
+				default: phone = "Frankfort, OH"; break;
+			}
+			String email = r.nextInt(20) == 0 ? null : (first + "." + last + i + "@" + DOMAINS[r.nextInt(DOMAINS.length)]);
+			custs.add(new LambdasAndStreams.Customer(first + " " + last, phone, 15 + r.nextInt(70), email));
+		}
+		return custs;
+	}
+
+	static HashMap<Integer,LambdasAndStreams.Customer> customerTable(int n, long seed) {
+		List<LambdasAndStreams.Customer> custs = randomCustomers(n, seed);
+		HashMap<Integer,LambdasAndStreams.Customer> table = new HashMap<Integer,LambdasAndStreams.Customer>();
+		for (int i = 0; i < custs.size(); i++) { table.put(i, custs.get(i)); }
+		return table;
+	}
+}
@@ -0,0 +1,63 @@
+/*
+  ScalingReport: How ParallelRecipes scales from 1 core to every core on this machine.
+
+  For each input size, every recipe is timed with a pool of 1, 2, 4, ... N workers (thresholds forced to 0
+  so the parallel path always runs), next to the plain sequential stream.  The speedup column is
+  sequential time / parallel time: anything below 1.0 means parallelism costs more than it saves at that
+  size, which is where ParallelRecipes' thresholds belong.
+
+  Run: java -Xmx8g -cp bin ScalingReport [sizes...]   (same -Dbench.* tuning flags as RecipeBenchmarks)  */
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.LongSupplier;
+import java.util.stream.Collectors;
+
+public class ScalingReport {
+	static final int[] DEFAULT_SIZES = new int[] {10_000, 100_000, 1_000_000, 10_000_000};
+
+	public static void main(String[] args) {
+		int[] sizes = args.length > 0 ? Arrays.stream(args).mapToInt(Integer::parseInt).toArray() : DEFAULT_SIZES;
+		int cores = Runtime.getRuntime().availableProcessors();
+		List<Integer> workers = new ArrayList<Integer>();
+		for (int p = 1; p < cores; p *= 2) {
+			workers.add(p);
+		}
+		workers.add(cores);
+
+		System.out.printf("%-18s %10s %8s %14s %14s %8s%n", "recipe", "n", "workers", "seq us/op", "par us/op", "speedup");
+		for (int n : sizes) {
+			int[] arr = RecipeBenchmarks.randomInts(n, n, 42);
+			List<LambdasAndStreams.Customer> custs = n <= RecipeBenchmarks.OBJECTS_MAX ? RecipeBenchmarks.randomCustomers(n, 7) : null;
+
+			double seqMin = RecipeBenchmarks.nanosPerOp(() -> Arrays.stream(arr).min().orElse(-1));
+			double seqDistinct = RecipeBenchmarks.nanosPerOp(() -> Arrays.stream(arr).distinct().toArray().length);
+			double seqFilter = RecipeBenchmarks.nanosPerOp(() -> Arrays.stream(arr).filter(v -> v%2 == 0).toArray().length);
+			double seqMap = RecipeBenchmarks.nanosPerOp(() -> Arrays.stream(arr).map(v -> v*2).toArray().length);
+			double seqSort = RecipeBenchmarks.nanosPerOp(() -> Arrays.stream(arr).sorted().toArray().length);
+			double seqCustFilter = custs == null ? 0 : RecipeBenchmarks.nanosPerOp(() -> custs.stream().filter(c -> c.getAge() > 30)
+			                                                                              .collect(Collectors.toCollection(ArrayList::new)).size());
+			double seqCustMax = custs == null ? 0 : RecipeBenchmarks.nanosPerOp(() -> custs.stream().max(Comparator.comparingInt(LambdasAndStreams.Customer::getAge)).get().getAge());
+
+			for (int p : workers) {
+				try (ParallelRecipes par = new ParallelRecipes(p, 0, 0)) {
+					row("min", n, p, seqMin, () -> par.min(arr).orElse(-1));
+					row("distinct", n, p, seqDistinct, () -> par.distinct(arr).length);
+					row("filter even", n, p, seqFilter, () -> par.filter(arr, v -> v%2 == 0).length);
+					row("map*2", n, p, seqMap, () -> par.map(arr, v -> v*2).length);
+					row("sorted", n, p, seqSort, () -> par.sorted(arr).length);
+					if (custs != null) {
+						row("customer age>30", n, p, seqCustFilter, () -> par.filter(custs, c -> c.getAge() > 30).size());
+						row("customer max age", n, p, seqCustMax, () -> par.max(custs, Comparator.comparingInt(LambdasAndStreams.Customer::getAge)).get().getAge());
+					}
+				}
+			}
+		}
+	}
+
+	static void row(String name, int n, int workers, double seqNanos, LongSupplier op) {
+		double parNanos = RecipeBenchmarks.nanosPerOp(op);
+		System.out.printf("%-18s %10d %8d %14.3f %14.3f %8.2f%n", name, n, workers, seqNanos / 1e3, parNanos / 1e3, seqNanos / parNanos);
+	}
+}
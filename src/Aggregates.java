@@ -0,0 +1,284 @@
+/*
+  Aggregates: Count, sum, min, max, average AND where the min/max are (argMin/argMax) in ONE pass.
+
+  The tutorial streams orig_int_arr once for count(), again for min() and again for max(), and walks the
+  Customer list separately for max age, min age, max name and min name.  Each of those passes reads all
+  of the data again.  Here every statistic is updated from the same element in the same pass:
+
+      IntStats ages = Aggregates.of(custs, Customer::getAge);
+      custs.get(ages.argMax())      //oldest customer
+      ages.min(), ages.average()    //no extra passes
+
+  Stats of an int key AND a Comparable key (age and name: the tutorial's four Customer questions) also come
+  out of one pass, with stats(Customer::getAge, Customer::getName) or of(custs, Customer::getAge, Customer::getName).
+
+  The accumulators can be split and merged, so they also work as a parallel Collector.  argMin/argMax (in
+  IntStats and KeyStats alike) are positions in encounter order (the list index for a List) and always
+  point at the FIRST element holding the min/max, in parallel too: combine() treats the right hand side as
+  coming after the left hand side.
+  Nothing is boxed.  */
+import java.util.List;
+import java.util.function.BiConsumer;
+import java.util.function.BinaryOperator;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.IntConsumer;
+import java.util.function.ToIntFunction;
+import java.util.stream.Collector;
+import java.util.stream.IntStream;
+
+public class Aggregates {
+	private Aggregates() {
+	}
+
+	public static IntStats of(int[] values) {
+		IntStats s = new IntStats();
+		for (int v : values) {
+			s.accept(v);
+		}
+		return s;
+	}
+
+	//Same result as of(values), computed by splitting the array across the common ForkJoinPool
+	public static IntStats ofParallel(int[] values) {
+		return IntStream.range(0, values.length).parallel()
+		                .collect(IntStats::new, (s, i) -> s.accept(values[i]), IntStats::combine);
+	}
+
+	public static <T> IntStats of(List<T> items, ToIntFunction<? super T> key) {
+		IntStats s = new IntStats();
+		for (T item : items) {
+			s.accept(key.applyAsInt(item));
+		}
+		return s;
+	}
+
+	//custs.stream().collect(Aggregates.intStats(Customer::getAge)), sequential or parallel
+	public static <T> Collector<T,IntStats,IntStats> intStats(ToIntFunction<? super T> key) {
+		BiConsumer<IntStats,T> add = (s, t) -> s.accept(key.applyAsInt(t));
+		BinaryOperator<IntStats> merge = IntStats::combine;
+		return Collector.of(IntStats::new, add, merge, Collector.Characteristics.IDENTITY_FINISH);
+	}
+
+	//Both at once, one pass: the first argument runs into an IntStats, the second into a KeyStats
+	public static <T,K extends Comparable<? super K>> Stats<T,K> of(List<T> items, ToIntFunction<? super T> intKey,
+	                                                                Function<? super T,? extends K> key) {
+		Stats<T,K> s = new Stats<T,K>(intKey, key);
+		for (T item : items) {
+			s.accept(item);
+		}
+		return s;
+	}
+
+	//custs.stream().collect(Aggregates.stats(Customer::getAge, Customer::getName)), sequential or parallel
+	public static <T,K extends Comparable<? super K>> Collector<T,Stats<T,K>,Stats<T,K>> stats(ToIntFunction<? super T> intKey,
+	                                                                                          Function<? super T,? extends K> key) {
+		BiConsumer<Stats<T,K>,T> add = Stats::accept;
+		BinaryOperator<Stats<T,K>> merge = Stats::combine;
+		return Collector.of(() -> new Stats<T,K>(intKey, key), add, merge, Collector.Characteristics.IDENTITY_FINISH);
+	}
+
+	//Min/max by any Comparable key (e.g. Customer::getName) plus the elements holding them, in one pass
+	public static <T,K extends Comparable<? super K>> Collector<T,KeyStats<T,K>,KeyStats<T,K>> keyStats(Function<? super T,? extends K> key) {
+		BiConsumer<KeyStats<T,K>,T> add = KeyStats::accept;
+		BinaryOperator<KeyStats<T,K>> merge = KeyStats::combine;
+		return Collector.of(() -> new KeyStats<T,K>(key), add, merge, Collector.Characteristics.IDENTITY_FINISH);
+	}
+
+	//Running count/sum/min/max/argMin/argMax of ints.  Like IntSummaryStatistics, plus where the min and max were.
+	public static final class IntStats implements IntConsumer {
+		private long count;
+		private long sum;
+		private int min = Integer.MAX_VALUE;
+		private int max = Integer.MIN_VALUE;
+		private long argMin = -1;
+		private long argMax = -1;
+
+		@Override
+		public void accept(int v) {
+			if (v < min || argMin < 0) {
+				min = v;
+				argMin = count;
+			}
+			if (v > max || argMax < 0) {
+				max = v;
+				argMax = count;
+			}
+			sum += v;
+			count++;
+		}
+
+		//Adds other's values as if they came AFTER this one's.  Returns this.
+		public IntStats combine(IntStats other) {
+			if (other.count == 0) {
+				return this;
+			}
+			if (count == 0 || other.min < min) {
+				min = other.min;
+				argMin = count + other.argMin;
+			}
+			if (count == 0 || other.max > max) {
+				max = other.max;
+				argMax = count + other.argMax;
+			}
+			sum += other.sum;
+			count += other.count;
+			return this;
+		}
+
+		public long count() {
+			return count;
+		}
+
+		public long sum() {
+			return sum;
+		}
+
+		//Integer.MAX_VALUE if there were no values
+		public int min() {
+			return min;
+		}
+
+		//Integer.MIN_VALUE if there were no values
+		public int max() {
+			return max;
+		}
+
+		public double average() {
+			return count == 0 ? 0.0 : (double) sum / count;
+		}
+
+		//Position of the first min, or -1 if there were no values
+		public int argMin() {
+			return (int) argMin;
+		}
+
+		//Position of the first max, or -1 if there were no values
+		public int argMax() {
+			return (int) argMax;
+		}
+
+		@Override
+		public String toString() {
+			return "IntStats{count=" + count + ", sum=" + sum + ", min=" + min + " at " + argMin
+			       + ", max=" + max + " at " + argMax + ", average=" + average() + "}";
+		}
+	}
+
+	//Running count/min/max by a Comparable key, keeping the element that holds each and its position.
+	//First one wins on ties.
+	public static final class KeyStats<T,K extends Comparable<? super K>> implements Consumer<T> {
+		private final Function<? super T,? extends K> key;
+		private long count;
+		private K minKey;
+		private K maxKey;
+		private T minElement;
+		private T maxElement;
+		private long argMin = -1;
+		private long argMax = -1;
+
+		KeyStats(Function<? super T,? extends K> key) {
+			this.key = key;
+		}
+
+		@Override
+		public void accept(T t) {
+			K k = key.apply(t);
+			if (count == 0 || k.compareTo(minKey) < 0) {
+				minKey = k;
+				minElement = t;
+				argMin = count;
+			}
+			if (count == 0 || k.compareTo(maxKey) > 0) {
+				maxKey = k;
+				maxElement = t;
+				argMax = count;
+			}
+			count++;
+		}
+
+		//Adds other's elements as if they came AFTER this one's.  Returns this.
+		public KeyStats<T,K> combine(KeyStats<T,K> other) {
+			if (other.count == 0) {
+				return this;
+			}
+			if (count == 0 || other.minKey.compareTo(minKey) < 0) {
+				minKey = other.minKey;
+				minElement = other.minElement;
+				argMin = count + other.argMin;
+			}
+			if (count == 0 || other.maxKey.compareTo(maxKey) > 0) {
+				maxKey = other.maxKey;
+				maxElement = other.maxElement;
+				argMax = count + other.argMax;
+			}
+			count += other.count;
+			return this;
+		}
+
+		public long count() {
+			return count;
+		}
+
+		//null if there were no elements
+		public T min() {
+			return minElement;
+		}
+
+		//null if there were no elements
+		public T max() {
+			return maxElement;
+		}
+
+		public K minKey() {
+			return minKey;
+		}
+
+		public K maxKey() {
+			return maxKey;
+		}
+
+		//Position of the first min, or -1 if there were no elements
+		public int argMin() {
+			return (int) argMin;
+		}
+
+		//Position of the first max, or -1 if there were no elements
+		public int argMax() {
+			return (int) argMax;
+		}
+	}
+
+	//An IntStats and a KeyStats fed from the same elements in the same pass
+	public static final class Stats<T,K extends Comparable<? super K>> implements Consumer<T> {
+		private final ToIntFunction<? super T> intKey;
+		private final IntStats ints = new IntStats();
+		private final KeyStats<T,K> keys;
+
+		Stats(ToIntFunction<? super T> intKey, Function<? super T,? extends K> key) {
+			this.intKey = intKey;
+			this.keys = new KeyStats<T,K>(key);
+		}
+
+		@Override
+		public void accept(T t) {
+			ints.accept(intKey.applyAsInt(t));
+			keys.accept(t);
+		}
+
+		//Adds other's elements as if they came AFTER this one's.  Returns this.
+		public Stats<T,K> combine(Stats<T,K> other) {
+			ints.combine(other.ints);
+			keys.combine(other.keys);
+			return this;
+		}
+
+		public IntStats ints() {
+			return ints;
+		}
+
+		public KeyStats<T,K> keys() {
+			return keys;
+		}
+	}
+}
@@ -0,0 +1,244 @@
+/*
+  BatchedSink: The end of a stream that prints or exports every element, without a System.out.print per element.
+
+  forEach(x -> System.out.print(x + " ")) builds a new String for every element and then takes
+  PrintStream's lock and encodes it, again for every element.  A BatchedSink formats the elements straight
+  into one reusable byte buffer (ints and longs digit by digit, Strings char by char as UTF-8, nothing
+  allocated) and hands the channel one large write every time the buffer fills up:
+
+      try (BatchedSink out = BatchedSink.toFile(path).separator(", ").nullPlaceholder("NO EMAIL")) {
+          custs.stream().map(Customer::getEmail).forEach(out);
+      }
+
+  It is an IntConsumer (for IntStream.forEach) and a Consumer<Object> (for Stream.forEach).  Elements are
+  separated by separator() (a space unless set), newLine() starts a new line, and a null element is written
+  as nullPlaceholder() (the text "null" unless set, same as String.valueOf).  Output reaches the channel on
+  flush(), close() or when the buffer is full.  Not thread-safe: use it from a sequential stream or
+  forEachOrdered().  */
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.IntConsumer;
+
+public class BatchedSink implements IntConsumer, Consumer<Object>, Flushable, Closeable {
+	static final int DEFAULT_BUFFER_SIZE = 1 << 16;
+	private static final byte[] LONG_MIN = "-9223372036854775808".getBytes(StandardCharsets.US_ASCII);
+
+	private final WritableByteChannel channel;
+	private final boolean closeChannel;
+	private OutputStream stream; //set by toStream(), so flush() reaches past the stream's own buffer
+	private final ByteBuffer buffer;
+	private final byte[] bytes;
+	private String separator = " ";
+	private String nullPlaceholder = "null";
+	private String lineSeparator = System.lineSeparator();
+	private boolean atLineStart = true;
+
+	public BatchedSink(WritableByteChannel channel, int bufferSize, boolean closeChannel) {
+		if (bufferSize < 64) {
+			throw new IllegalArgumentException("Buffer too small: " + bufferSize);
+		}
+		this.channel = channel;
+		this.closeChannel = closeChannel;
+		this.bytes = new byte[bufferSize];
+		this.buffer = ByteBuffer.wrap(bytes);
+	}
+
+	//Writes to the channel and closes it on close()
+	public static BatchedSink to(WritableByteChannel channel) {
+		return new BatchedSink(channel, DEFAULT_BUFFER_SIZE, true);
+	}
+
+	//Creates or truncates the file
+	public static BatchedSink toFile(Path file) throws IOException {
+		return to(FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING));
+	}
+
+	//Goes through System.out itself, so it stays in order with other System.out calls.  close() leaves System.out open.
+	public static BatchedSink toStdout() {
+		return toStream(System.out);
+	}
+
+	//close() flushes but does not close the stream
+	public static BatchedSink toStream(OutputStream out) {
+		BatchedSink sink = new BatchedSink(Channels.newChannel(out), DEFAULT_BUFFER_SIZE, false);
+		sink.stream = out;
+		return sink;
+	}
+
+	//----------------------------- Settings -----------------------------
+
+	//Written between two elements on the same line
+	public BatchedSink separator(String separator) {
+		this.separator = separator;
+		return this;
+	}
+
+	//Written instead of a null element, like the tutorial's c.customerEmail != null ? ... : " NO EMAIL "
+	public BatchedSink nullPlaceholder(String placeholder) {
+		this.nullPlaceholder = placeholder;
+		return this;
+	}
+
+	public BatchedSink lineSeparator(String lineSeparator) {
+		this.lineSeparator = lineSeparator;
+		return this;
+	}
+
+	//----------------------------- Elements -----------------------------
+
+	@Override
+	public void accept(int value) {
+		beginElement();
+		writeLong(value);
+	}
+
+	public void accept(long value) {
+		beginElement();
+		writeLong(value);
+	}
+
+	//CharSequences are copied char by char, Integers and Longs formatted without a String, anything else via toString()
+	@Override
+	public void accept(Object value) {
+		beginElement();
+		if (value == null) {
+			writeChars(nullPlaceholder);
+		} else if (value instanceof CharSequence) {
+			writeChars((CharSequence) value);
+		} else if (value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte) {
+			writeLong(((Number) value).longValue());
+		} else {
+			writeChars(value.toString());
+		}
+	}
+
+	//A Consumer that writes one field of each element: custs.forEach(out.field(Customer::getEmail))
+	public <T> Consumer<T> field(Function<? super T,?> getter) {
+		return t -> accept(getter.apply(t));
+	}
+
+	public BatchedSink newLine() {
+		writeChars(lineSeparator);
+		atLineStart = true;
+		return this;
+	}
+
+	//Text written as is: no separator before it, no null placeholder
+	public BatchedSink append(CharSequence text) {
+		writeChars(text);
+		return this;
+	}
+
+	@Override
+	public void flush() {
+		buffer.flip();
+		try {
+			while (buffer.hasRemaining()) {
+				channel.write(buffer);
+			}
+			if (stream != null) {
+				stream.flush();
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		} finally {
+			buffer.clear();
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		try {
+			flush();
+		} finally {
+			if (closeChannel) {
+				channel.close();
+			}
+		}
+	}
+
+	//----------------------------- Formatting -----------------------------
+
+	private void beginElement() {
+		if (!atLineStart) {
+			writeChars(separator);
+		}
+		atLineStart = false;
+	}
+
+	//Digits are written backwards from the end of the number's slot, so nothing else is needed
+	private void writeLong(long v) {
+		if (v == Long.MIN_VALUE) {
+			ensure(LONG_MIN.length);
+			buffer.put(LONG_MIN);
+			return;
+		}
+		ensure(20);
+		int pos = buffer.position();
+		if (v < 0) {
+			bytes[pos++] = '-';
+			v = -v;
+		}
+		int digits = 1;
+		for (long p = 10; digits < 19 && v >= p; p *= 10) {
+			digits++;
+		}
+		int end = pos + digits;
+		for (int i = end - 1; i >= pos; i--) {
+			bytes[i] = (byte) ('0' + v % 10);
+			v /= 10;
+		}
+		buffer.position(end);
+	}
+
+	//UTF-8 by hand, one char at a time, so no String or CharBuffer is ever encoded into a temporary array
+	private void writeChars(CharSequence s) {
+		for (int i = 0, n = s.length(); i < n; i++) {
+			char ch = s.charAt(i);
+			if (ch < 0x80) {
+				if (!buffer.hasRemaining()) {
+					flush();
+				}
+				buffer.put((byte) ch);
+			} else if (ch < 0x800) {
+				ensure(2);
+				buffer.put((byte) (0xC0 | (ch >> 6)));
+				buffer.put((byte) (0x80 | (ch & 0x3F)));
+			} else if (Character.isHighSurrogate(ch) && i + 1 < n && Character.isLowSurrogate(s.charAt(i + 1))) {
+				int cp = Character.toCodePoint(ch, s.charAt(++i));
+				ensure(4);
+				buffer.put((byte) (0xF0 | (cp >> 18)));
+				buffer.put((byte) (0x80 | ((cp >> 12) & 0x3F)));
+				buffer.put((byte) (0x80 | ((cp >> 6) & 0x3F)));
+				buffer.put((byte) (0x80 | (cp & 0x3F)));
+			} else if (Character.isSurrogate(ch)) {
+				//A lone surrogate can't be encoded; write '?' like the JDK's encoders do
+				ensure(1);
+				buffer.put((byte) '?');
+			} else {
+				ensure(3);
+				buffer.put((byte) (0xE0 | (ch >> 12)));
+				buffer.put((byte) (0x80 | ((ch >> 6) & 0x3F)));
+				buffer.put((byte) (0x80 | (ch & 0x3F)));
+			}
+		}
+	}
+
+	private void ensure(int room) {
+		if (buffer.remaining() < room) {
+			flush();
+		}
+	}
+}
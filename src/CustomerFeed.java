@@ -0,0 +1,600 @@
+/*
+  CustomerFeed: Streams Customer records out of a CSV or NDJSON file without ever holding the whole
+  file (or a List<Customer> of it) in memory.  Use it in place of createCustomers() when the customers
+  come from a multi-GB batch file:
+
+      try (Stream<Customer> custs = CustomerFeed.stream(path)) {
+          custs.filter(per -> per.getAge() > 30).forEach(...);
+      }
+
+  - The file is read through a FileChannel into ONE reusable 64KB byte buffer, decoded into one reusable
+    char buffer, and each line is assembled in one reusable StringBuilder.  Only the Customer and its
+    four field Strings are allocated per record.
+  - Parsing is lazy: a line is only read and parsed when the stream asks for the next element, so the
+    filter(...) recipes run record by record as the file is read.  A stream pulls, so a slow consumer
+    simply reads the file slower: that is the backpressure.
+  - readAhead() parses on a background thread into a BOUNDED queue of batches, so reading/parsing overlaps
+    with the consumer's work.  When the queue is full the reader thread blocks until the consumer catches up,
+    so memory use is capped at maxBatches * batchSize customers no matter how large the file is.
+  Always close the stream (try-with-resources) so the file and the read-ahead thread are released.
+
+  CSV:    name,phone,age,email  -- an optional header line, double quotes around fields containing commas or
+          line breaks ("" inside quotes is a literal quote), and an empty email means null.
+  NDJSON: one flat object per line: {"name":"Simon Says","phone":"614-123-4567","age":40,"email":null}
+          Unknown keys are skipped; nested objects/arrays are not supported.
+  Malformed records throw an IllegalArgumentException with the line number.  */
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+public class CustomerFeed {
+	public enum Format { CSV, NDJSON }
+
+	static final int BUFFER_SIZE = 1 << 16;
+
+	private CustomerFeed() {
+	}
+
+	//Picks the format from the file extension: .ndjson/.jsonl/.json are NDJSON, everything else CSV
+	public static Format formatOf(Path file) {
+		String name = file.getFileName().toString().toLowerCase();
+		return name.endsWith(".ndjson") || name.endsWith(".jsonl") || name.endsWith(".json") ? Format.NDJSON : Format.CSV;
+	}
+
+	public static Stream<LambdasAndStreams.Customer> stream(Path file) throws IOException {
+		return stream(file, formatOf(file));
+	}
+
+	//Lazily parsed, sequential stream of the file's customers.  Close it when done.
+	public static Stream<LambdasAndStreams.Customer> stream(Path file, Format format) throws IOException {
+		RecordReader reader = new RecordReader(FileChannel.open(file, StandardOpenOption.READ), format);
+		Spliterator<LambdasAndStreams.Customer> split = new Spliterators.AbstractSpliterator<LambdasAndStreams.Customer>(
+				Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL) {
+			@Override
+			public boolean tryAdvance(Consumer<? super LambdasAndStreams.Customer> action) {
+				LambdasAndStreams.Customer c = reader.next();
+				if (c == null) {
+					return false;
+				}
+				action.accept(c);
+				return true;
+			}
+		};
+		return StreamSupport.stream(split, false).onClose(reader::closeUnchecked);
+	}
+
+	//Same as stream(), but the file is read and parsed on a background thread, at most maxBatches batches of
+	//batchSize customers ahead of the consumer.  Close it when done (that also stops the reader thread).
+	public static Stream<LambdasAndStreams.Customer> readAhead(Path file, Format format, int batchSize, int maxBatches) throws IOException {
+		if (batchSize < 1 || maxBatches < 1) {
+			throw new IllegalArgumentException("batchSize and maxBatches must be at least 1");
+		}
+		ReadAhead ahead = new ReadAhead(new RecordReader(FileChannel.open(file, StandardOpenOption.READ), format), batchSize, maxBatches);
+		ahead.thread.start();
+		Spliterator<LambdasAndStreams.Customer> split = new Spliterators.AbstractSpliterator<LambdasAndStreams.Customer>(
+				Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL) {
+			@Override
+			public boolean tryAdvance(Consumer<? super LambdasAndStreams.Customer> action) {
+				LambdasAndStreams.Customer c = ahead.next();
+				if (c == null) {
+					return false;
+				}
+				action.accept(c);
+				return true;
+			}
+		};
+		return StreamSupport.stream(split, false).onClose(ahead::close);
+	}
+
+	//Writes customers as CSV (with a header line) that stream() can read back.
+	public static void writeCsv(Path file, Collection<LambdasAndStreams.Customer> custs) throws IOException {
+		try (FileChannel ch = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+		                                       StandardOpenOption.TRUNCATE_EXISTING)) {
+			StringBuilder sb = new StringBuilder(BUFFER_SIZE);
+			sb.append("name,phone,age,email\n");
+			for (LambdasAndStreams.Customer c : custs) {
+				csvField(sb, c.getName()).append(',');
+				csvField(sb, c.getPhone()).append(',');
+				sb.append(c.getAge()).append(',');
+				csvField(sb, c.getEmail()).append('\n');
+				if (sb.length() >= BUFFER_SIZE) {
+					writeFully(ch, sb);
+				}
+			}
+			writeFully(ch, sb);
+		}
+	}
+
+	private static StringBuilder csvField(StringBuilder sb, String s) {
+		if (s == null) {
+			return sb;
+		}
+		if (s.indexOf(',') < 0 && s.indexOf('"') < 0 && s.indexOf('\n') < 0 && s.indexOf('\r') < 0) {
+			return sb.append(s);
+		}
+		sb.append('"');
+		for (int i = 0; i < s.length(); i++) {
+			char c = s.charAt(i);
+			if (c == '"') {
+				sb.append('"');
+			}
+			sb.append(c);
+		}
+		return sb.append('"');
+	}
+
+	private static void writeFully(FileChannel ch, StringBuilder sb) throws IOException {
+		ByteBuffer out = StandardCharsets.UTF_8.encode(CharBuffer.wrap(sb));
+		while (out.hasRemaining()) {
+			ch.write(out);
+		}
+		sb.setLength(0);
+	}
+
+	//----------------------------- Reading -----------------------------
+
+	//Reads one line at a time out of the channel, reusing the same buffers for the whole file.
+	static final class LineReader implements Closeable {
+		private final ReadableByteChannel ch;
+		private final ByteBuffer bytes = ByteBuffer.allocateDirect(BUFFER_SIZE);
+		private final CharBuffer chars = CharBuffer.allocate(BUFFER_SIZE);
+		private final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder();
+		private final StringBuilder line = new StringBuilder(256);
+		private boolean inputDone;
+		private boolean decoderDone;
+		private boolean endedWithCr;
+		private long lineNumber;
+
+		LineReader(ReadableByteChannel ch) {
+			this.ch = ch;
+			this.chars.flip();
+		}
+
+		//The next line (without its \n or \r\n), or null at the end of the file.
+		//The returned builder is reused by the next call, so read it before calling again.
+		StringBuilder nextLine() throws IOException {
+			line.setLength(0);
+			while (true) {
+				while (chars.hasRemaining()) {
+					char c = chars.get();
+					if (c == '\n') {
+						return finishLine();
+					}
+					line.append(c);
+				}
+				if (decoderDone) {
+					return line.length() > 0 ? finishLine() : null;
+				}
+				refill();
+			}
+		}
+
+		long lineNumber() {
+			return lineNumber;
+		}
+
+		//Whether the last line ended in \r\n rather than \n, so a quoted CSV field can keep its line break as written
+		boolean endedWithCr() {
+			return endedWithCr;
+		}
+
+		private StringBuilder finishLine() {
+			int len = line.length();
+			endedWithCr = len > 0 && line.charAt(len - 1) == '\r';
+			if (endedWithCr) {
+				line.setLength(len - 1);
+			}
+			lineNumber++;
+			return line;
+		}
+
+		private void refill() throws IOException {
+			chars.clear();
+			if (!inputDone && ch.read(bytes) < 0) {
+				inputDone = true;
+			}
+			bytes.flip();
+			CoderResult r = decoder.decode(bytes, chars, inputDone);
+			if (r.isError()) {
+				r.throwException();
+			}
+			bytes.compact();
+			if (inputDone && r.isUnderflow() && bytes.position() == 0) {
+				decoder.flush(chars);
+				decoderDone = true;
+			}
+			chars.flip();
+		}
+
+		@Override
+		public void close() throws IOException {
+			ch.close();
+		}
+	}
+
+	//Turns lines into Customers.  next() returns null at the end of the file.
+	static final class RecordReader {
+		private final LineReader lines;
+		private final Format format;
+		private final ArrayList<String> fields = new ArrayList<String>(4);
+		private final StringBuilder field = new StringBuilder();
+		private final StringBuilder record = new StringBuilder();
+		private boolean first = true;
+
+		RecordReader(ReadableByteChannel ch, Format format) {
+			this.lines = new LineReader(ch);
+			this.format = format;
+		}
+
+		LambdasAndStreams.Customer next() {
+			try {
+				StringBuilder line;
+				while ((line = lines.nextLine()) != null) {
+					if (isBlank(line)) {
+						continue;
+					}
+					if (first) {
+						first = false;
+						if (format == Format.CSV && startsWithIgnoreCase(line, "name,")) {
+							continue;
+						}
+					}
+					return format == Format.CSV ? parseCsv(joinQuotedLines(line)) : parseJson(line);
+				}
+				return null;
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+
+		//A quoted CSV field can span lines: while a quote is still open, the next line belongs to the same record.
+		//Quotes are counted by parity, which "" escapes don't change.
+		private CharSequence joinQuotedLines(StringBuilder line) throws IOException {
+			if (!oddQuotes(line)) {
+				return line;
+			}
+			record.setLength(0);
+			record.append(line);
+			boolean open = true;
+			while (open) {
+				String lineBreak = lines.endedWithCr() ? "\r\n" : "\n";
+				StringBuilder more = lines.nextLine();
+				if (more == null) {
+					break; //parseCsv() reports the unterminated quote
+				}
+				record.append(lineBreak).append(more);
+				open ^= oddQuotes(more);
+			}
+			return record;
+		}
+
+		private static boolean oddQuotes(CharSequence s) {
+			boolean odd = false;
+			for (int i = 0; i < s.length(); i++) {
+				odd ^= s.charAt(i) == '"';
+			}
+			return odd;
+		}
+
+		void closeUnchecked() {
+			try {
+				lines.close();
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+
+		private LambdasAndStreams.Customer parseCsv(CharSequence line) {
+			fields.clear();
+			field.setLength(0);
+			boolean quoted = false;
+			for (int i = 0; i < line.length(); i++) {
+				char c = line.charAt(i);
+				if (quoted) {
+					if (c == '"') {
+						if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+							field.append('"');
+							i++;
+						} else {
+							quoted = false;
+						}
+					} else {
+						field.append(c);
+					}
+				} else if (c == '"') {
+					quoted = true;
+				} else if (c == ',') {
+					fields.add(field.toString());
+					field.setLength(0);
+				} else {
+					field.append(c);
+				}
+			}
+			if (quoted) {
+				throw malformed("unterminated quote");
+			}
+			fields.add(field.toString());
+			if (fields.size() != 4) {
+				throw malformed("expected 4 fields but found " + fields.size());
+			}
+			String email = fields.get(3);
+			return new LambdasAndStreams.Customer(fields.get(0), fields.get(1), parseAge(fields.get(2).trim()),
+			                                      email.isEmpty() ? null : email);
+		}
+
+		private LambdasAndStreams.Customer parseJson(CharSequence line) {
+			JsonCursor in = new JsonCursor(line);
+			String name = null, phone = null, email = null;
+			int age = 0;
+			in.expect('{');
+			if (!in.consume('}')) {
+				do {
+					String key = in.string();
+					in.expect(':');
+					switch (key) {
+						case "name":  name = in.stringOrNull(); break;
+						case "phone": phone = in.stringOrNull(); break;
+						case "email": email = in.stringOrNull(); break;
+						case "age":   age = parseAge(in.literal()); break;
+						default:      in.skipValue(); break;
+					}
+				} while (in.consume(','));
+				in.expect('}');
+			}
+			return new LambdasAndStreams.Customer(name, phone, age, email);
+		}
+
+		private int parseAge(String s) {
+			try {
+				return Integer.parseInt(s);
+			} catch (NumberFormatException e) {
+				throw malformed("age is not a number: " + s);
+			}
+		}
+
+		private IllegalArgumentException malformed(String why) {
+			return new IllegalArgumentException("Malformed " + format + " record at line " + lines.lineNumber() + ": " + why);
+		}
+
+		//Just enough of a JSON reader for one flat object per line.
+		private final class JsonCursor {
+			private final CharSequence s;
+			private int pos;
+
+			JsonCursor(CharSequence s) {
+				this.s = s;
+			}
+
+			void expect(char c) {
+				if (!consume(c)) {
+					throw malformed("expected '" + c + "' at column " + (pos + 1));
+				}
+			}
+
+			boolean consume(char c) {
+				skipWhitespace();
+				if (pos < s.length() && s.charAt(pos) == c) {
+					pos++;
+					return true;
+				}
+				return false;
+			}
+
+			String stringOrNull() {
+				skipWhitespace();
+				if (pos < s.length() && s.charAt(pos) == '"') {
+					return string();
+				}
+				String lit = literal();
+				if (!lit.equals("null")) {
+					throw malformed("expected a string or null but found " + lit);
+				}
+				return null;
+			}
+
+			String string() {
+				expect('"');
+				StringBuilder sb = new StringBuilder();
+				while (pos < s.length()) {
+					char c = s.charAt(pos++);
+					if (c == '"') {
+						return sb.toString();
+					}
+					if (c != '\\') {
+						sb.append(c);
+						continue;
+					}
+					if (pos >= s.length()) {
+						break;
+					}
+					char e = s.charAt(pos++);
+					switch (e) {
+						case 'b': sb.append('\b'); break;
+						case 'f': sb.append('\f'); break;
+						case 'n': sb.append('\n'); break;
+						case 'r': sb.append('\r'); break;
+						case 't': sb.append('\t'); break;
+						case 'u':
+							if (pos + 4 > s.length()) {
+								throw malformed("bad \\u escape");
+							}
+							sb.append((char) Integer.parseInt(s.subSequence(pos, pos + 4).toString(), 16));
+							pos += 4;
+							break;
+						default: sb.append(e); break;
+					}
+				}
+				throw malformed("unterminated string");
+			}
+
+			//A number, true, false or null, as written
+			String literal() {
+				skipWhitespace();
+				int start = pos;
+				while (pos < s.length() && ",}] \t".indexOf(s.charAt(pos)) < 0) {
+					pos++;
+				}
+				if (start == pos) {
+					throw malformed("expected a value at column " + (pos + 1));
+				}
+				return s.subSequence(start, pos).toString();
+			}
+
+			void skipValue() {
+				skipWhitespace();
+				if (pos < s.length() && s.charAt(pos) == '"') {
+					string();
+				} else if (pos < s.length() && (s.charAt(pos) == '{' || s.charAt(pos) == '[')) {
+					throw malformed("nested values are not supported");
+				} else {
+					literal();
+				}
+			}
+
+			private void skipWhitespace() {
+				while (pos < s.length() && Character.isWhitespace(s.charAt(pos))) {
+					pos++;
+				}
+			}
+		}
+	}
+
+	private static boolean isBlank(CharSequence s) {
+		for (int i = 0; i < s.length(); i++) {
+			if (!Character.isWhitespace(s.charAt(i))) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static boolean startsWithIgnoreCase(CharSequence s, String prefix) {
+		if (s.length() < prefix.length()) {
+			return false;
+		}
+		for (int i = 0; i < prefix.length(); i++) {
+			if (Character.toLowerCase(s.charAt(i)) != prefix.charAt(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	//----------------------------- Read-ahead -----------------------------
+
+	//Background reader feeding a bounded queue of batches.  An empty batch marks the end of the file.
+	private static final class ReadAhead {
+		private static final List<LambdasAndStreams.Customer> END = Collections.emptyList();
+
+		private final RecordReader reader;
+		private final int batchSize;
+		private final BlockingQueue<List<LambdasAndStreams.Customer>> queue;
+		private final Thread thread;
+		private volatile Throwable failure;
+		private volatile boolean closed;
+		private Iterator<LambdasAndStreams.Customer> current = Collections.emptyIterator();
+		private boolean finished;
+
+		ReadAhead(RecordReader reader, int batchSize, int maxBatches) {
+			this.reader = reader;
+			this.batchSize = batchSize;
+			this.queue = new ArrayBlockingQueue<List<LambdasAndStreams.Customer>>(maxBatches);
+			this.thread = new Thread(this::produce, "customer-feed-reader");
+			this.thread.setDaemon(true);
+		}
+
+		//END goes on the queue however the read ends, or the consumer would wait in take() forever
+		private void produce() {
+			try {
+				try {
+					List<LambdasAndStreams.Customer> batch = new ArrayList<LambdasAndStreams.Customer>(batchSize);
+					LambdasAndStreams.Customer c;
+					while (!closed && (c = reader.next()) != null) {
+						batch.add(c);
+						if (batch.size() == batchSize) {
+							queue.put(batch); //Blocks while the consumer is maxBatches behind
+							batch = new ArrayList<LambdasAndStreams.Customer>(batchSize);
+						}
+					}
+					if (!batch.isEmpty()) {
+						queue.put(batch);
+					}
+				} catch (InterruptedException e) {
+					return; //close() interrupts us, nobody is waiting for the rest
+				} catch (Throwable e) {
+					failure = e;
+				} finally {
+					try {
+						reader.closeUnchecked();
+					} catch (Throwable e) {
+						if (failure == null) { //A read error explains more than the close that followed it
+							failure = e;
+						}
+					}
+				}
+			} finally {
+				try {
+					if (!closed) {
+						queue.put(END);
+					}
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		}
+
+		LambdasAndStreams.Customer next() {
+			while (!current.hasNext()) {
+				if (finished) {
+					return null;
+				}
+				List<LambdasAndStreams.Customer> batch;
+				try {
+					batch = queue.take();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new IllegalStateException("Interrupted while waiting for customers", e);
+				}
+				if (batch == END) {
+					finished = true;
+					if (failure instanceof Error) {
+						throw (Error) failure;
+					}
+					if (failure != null) {
+						throw (RuntimeException) failure; //Neither next() nor closeUnchecked() throws anything checked
+					}
+					return null;
+				}
+				current = batch.iterator();
+			}
+			return current.next();
+		}
+
+		void close() {
+			closed = true;
+			thread.interrupt();
+			queue.clear();
+		}
+	}
+}
@@ -0,0 +1,123 @@
+/*
+  CustomerGroups: Break Customers down by a derived key (email domain, age band, last name initial, ...)
+  and get count/sum/min/max/average of an int value for every group, in one pass.
+
+      Map<String,Aggregates.IntStats> byDomain = CustomerGroups.groupBy(custs, CustomerGroups.EMAIL_DOMAIN, Customer::getAge);
+      byDomain.get("gmail.com").count(), byDomain.get(null).average()    //null = no email
+
+  groupByParallel() does the same on many threads WITHOUT Collectors.groupingByConcurrent: that collector
+  makes every thread insert into one ConcurrentHashMap, and with only a handful of keys (domains, age
+  bands) all threads keep hitting the same few bins.  Here the input is cut into chunks, each chunk is
+  grouped into its OWN plain HashMap by one thread, and the per-chunk maps are merged at the end.  The
+  merge costs (chunks * distinct keys), which is nothing next to the rows.
+
+  Keys may be null (HashMap allows one null key), which is how Customers without an email are counted.
+  The Aggregates.IntStats of a group is exactly what a sequential pass would give, including argMin/argMax,
+  which are positions WITHIN the group (the n-th Customer of that group in encounter order).
+  Works on a List<Customer> or the cust_table map's values().  */
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+import java.util.stream.IntStream;
+
+public class CustomerGroups {
+	//Below this many rows per chunk, handing a chunk to another thread costs more than grouping it
+	static final int MIN_CHUNK = 1 << 13;
+	//More chunks than threads, so a thread that finishes early can take another one
+	static final int CHUNKS_PER_THREAD = 4;
+
+	//Lowercased domain after the '@' ("gmail.com"), or null for Customers without an email
+	public static final Function<LambdasAndStreams.Customer,String> EMAIL_DOMAIN = c -> CustomerStore.emailDomain(c.getEmail());
+
+	//First letter of the lowercased last name, or null for an empty name
+	public static final Function<LambdasAndStreams.Customer,Character> LAST_INITIAL = c -> {
+		String last = c.getParsedName().getLastFolded();
+		return last.isEmpty() ? null : last.charAt(0);
+	};
+
+	private CustomerGroups() {
+	}
+
+	//Lower bound of the age band: ageBand(10) puts 37 in band 30.  Ages are small, so the Integer keys are cached ones.
+	public static Function<LambdasAndStreams.Customer,Integer> ageBand(int width) {
+		if (width < 1) {
+			throw new IllegalArgumentException("Age band width must be at least 1: " + width);
+		}
+		return c -> Math.floorDiv(c.getAge(), width) * width;
+	}
+
+	//Same result as custs.stream().collect(Collectors.groupingBy(key, Collectors.summarizingInt(value))), plus argMin/argMax
+	public static <T,K> HashMap<K,Aggregates.IntStats> groupBy(Collection<T> items, Function<? super T,? extends K> key,
+	                                                           ToIntFunction<? super T> value) {
+		HashMap<K,Aggregates.IntStats> groups = new HashMap<K,Aggregates.IntStats>();
+		for (T item : items) {
+			add(groups, item, key, value);
+		}
+		return groups;
+	}
+
+	//Per group counts only
+	public static <T,K> HashMap<K,Long> count(Collection<T> items, Function<? super T,? extends K> key) {
+		HashMap<K,Long> counts = new HashMap<K,Long>();
+		groupBy(items, key, t -> 0).forEach((k, stats) -> counts.put(k, stats.count()));
+		return counts;
+	}
+
+	//Same result as groupBy(), grouped chunk by chunk on the ForkJoinPool this is called from (the common
+	//pool, or e.g. ParallelRecipes' pool when called through ParallelRecipes.groupBy).
+	public static <T,K> HashMap<K,Aggregates.IntStats> groupByParallel(Collection<T> items, Function<? super T,? extends K> key,
+	                                                                   ToIntFunction<? super T> value) {
+		List<T> list = randomAccess(items);
+		int n = list.size();
+		ForkJoinPool pool = ForkJoinTask.inForkJoinPool() ? ForkJoinTask.getPool() : ForkJoinPool.commonPool();
+		int chunks = (int) Math.min(n / MIN_CHUNK, (long) pool.getParallelism() * CHUNKS_PER_THREAD);
+		if (chunks < 2) {
+			return groupBy(list, key, value);
+		}
+		//Ordered reduce: chunk i is always merged before chunk i + 1, so argMin/argMax match the sequential pass
+		return IntStream.range(0, chunks).parallel()
+		                .mapToObj(c -> {
+			                HashMap<K,Aggregates.IntStats> partial = new HashMap<K,Aggregates.IntStats>();
+			                int end = (int) ((long) n * (c + 1) / chunks);
+			                for (int i = (int) ((long) n * c / chunks); i < end; i++) {
+				                add(partial, list.get(i), key, value);
+			                }
+			                return partial;
+		                })
+		                .reduce(CustomerGroups::merge)
+		                .get();
+	}
+
+	private static <T,K> void add(Map<K,Aggregates.IntStats> groups, T item, Function<? super T,? extends K> key,
+	                              ToIntFunction<? super T> value) {
+		K k = key.apply(item);
+		Aggregates.IntStats stats = groups.get(k);
+		if (stats == null) {
+			stats = new Aggregates.IntStats();
+			groups.put(k, stats);
+		}
+		stats.accept(value.applyAsInt(item));
+	}
+
+	//Folds right into left.  Every group in right comes after the same group in left.
+	private static <K> HashMap<K,Aggregates.IntStats> merge(HashMap<K,Aggregates.IntStats> left, HashMap<K,Aggregates.IntStats> right) {
+		right.forEach((k, stats) -> left.merge(k, stats, Aggregates.IntStats::combine));
+		return left;
+	}
+
+	//cust_table.values() can't be indexed; one toArray() copy of the references makes it splittable
+	@SuppressWarnings("unchecked")
+	private static <T> List<T> randomAccess(Collection<T> items) {
+		if (items instanceof List && items instanceof RandomAccess) {
+			return (List<T>) items;
+		}
+		return (List<T>) Arrays.asList(items.toArray());
+	}
+}
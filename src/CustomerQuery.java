@@ -0,0 +1,447 @@
+/*
+  CustomerQuery: Describe a Customer filter as terms instead of a chain of filter() calls, and let the
+  query decide the order the terms run in.
+
+      CustomerQuery q = CustomerQuery.compile(CustomerQuery.and(
+                            CustomerQuery.contains(Field.EMAIL, "@gmail"),
+                            CustomerQuery.range(Field.AGE, Integer.MIN_VALUE, 40)));
+      List<Customer> less40_and_gmail = q.filter(custs);       //or custs.stream().filter(q)
+
+  - Fused: the whole query is ONE Predicate, so a stream runs one filter stage instead of one per condition.
+  - Null-safe: string terms are simply false on a null field, so there's no separate "!= null" stage to forget
+    (use isNull() to ask for the nulls).
+  - No garbage: contains/prefix ignore case with regionMatches instead of toLowerCase() on every Customer.
+  - Ordered by measurement: for about one Customer in SAMPLE_EVERY (a per-thread countdown, restarted at a
+    random length so it can't fall into step with the data), every term of every and/or is evaluated and
+    timed.  A System.nanoTime() pair costs more than an int test, so what the clock itself costs (measured
+    alongside the samples) is taken off every measurement.  After SAMPLES_PER_REPLAN such samples the terms
+    are re-sorted so the one that is cheapest per Customer it throws out (and) or lets through (or) runs
+    first.  Writing "email contains @gmail AND age < 40" ends up running the int test first if that is
+    faster, whatever order it was written in.
+  Compile once and reuse the CustomerQuery: the measurements (and the order) carry over between runs.
+  It may be used from many threads at once (e.g. a parallel stream): the fast path writes nothing shared,
+  the measurements are LongAdders touched only by samples, and a new order replaces the old one in one
+  volatile write, so a thread always runs some complete order of the terms.  */
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+
+public final class CustomerQuery implements Predicate<LambdasAndStreams.Customer> {
+	static final int SAMPLE_EVERY = 64;
+	static final int SAMPLES_PER_REPLAN = 256;
+	//Floor for a measured cost: below what the clock can tell apart, count a term as about one int compare, so
+	//cheap terms are still ordered by how much they decide
+	static final double MIN_COST_NANOS = 1;
+
+	public enum Field { NAME, PHONE, EMAIL, AGE }
+
+	//Customers left until this thread's next sample, shared by every query
+	private static final ThreadLocal<int[]> COUNTDOWN = ThreadLocal.withInitial(() -> new int[] {nextCountdown()});
+	//Two back-to-back System.nanoTime() calls, timed on the sampling path so it runs as hot as the samples
+	private static final LongAdder CLOCK_NANOS = new LongAdder();
+	private static final LongAdder CLOCK_READS = new LongAdder();
+
+	private final Term root;
+	private final AtomicLong samples = new AtomicLong();
+	private final AtomicBoolean replanning = new AtomicBoolean();
+
+	private CustomerQuery(Term root) {
+		this.root = root;
+	}
+
+	public static CustomerQuery compile(Term term) {
+		return new CustomerQuery(term);
+	}
+
+	@Override
+	public boolean test(LambdasAndStreams.Customer c) {
+		int[] countdown = COUNTDOWN.get();
+		if (--countdown[0] > 0) {
+			return root.test(c);
+		}
+		countdown[0] = nextCountdown();
+		long start = System.nanoTime();
+		CLOCK_NANOS.add(System.nanoTime() - start);
+		CLOCK_READS.increment();
+		boolean result = root.sample(c);
+		//One thread replans at a time; the others keep going with the current order
+		if (samples.incrementAndGet() % SAMPLES_PER_REPLAN == 0 && replanning.compareAndSet(false, true)) {
+			try {
+				root.replan();
+			} finally {
+				replanning.set(false);
+			}
+		}
+		return result;
+	}
+
+	//1 to 2 * SAMPLE_EVERY - 1: SAMPLE_EVERY on average
+	private static int nextCountdown() {
+		return 1 + ThreadLocalRandom.current().nextInt(2 * SAMPLE_EVERY - 1);
+	}
+
+	//What an empty timed region measures
+	static double clockNanos() {
+		long n = CLOCK_READS.sum();
+		return n == 0 ? 0 : (double) CLOCK_NANOS.sum() / n;
+	}
+
+	public ArrayList<LambdasAndStreams.Customer> filter(Collection<LambdasAndStreams.Customer> custs) {
+		ArrayList<LambdasAndStreams.Customer> out = new ArrayList<LambdasAndStreams.Customer>();
+		for (LambdasAndStreams.Customer c : custs) {
+			if (test(c)) {
+				out.add(c);
+			}
+		}
+		return out;
+	}
+
+	//The terms in the order they currently run, with what was measured for each
+	public String explain() {
+		return root.explain();
+	}
+
+	@Override
+	public String toString() {
+		return root.toString();
+	}
+
+	//----------------------------- Terms -----------------------------
+
+	public static Term eq(Field field, String value) {
+		checkString(field);
+		return new StringTerm(field, "= \"" + value + "\"", 2, s -> s.equals(value));
+	}
+
+	public static Term eq(Field field, int value) {
+		return range(field, value, value + 1L);
+	}
+
+	//min <= field < maxExclusive.  AGE only.
+	public static Term range(Field field, long min, long maxExclusive) {
+		if (field != Field.AGE) {
+			throw new IllegalArgumentException(field + " is not an int field");
+		}
+		return new AgeRange(min, maxExclusive);
+	}
+
+	//Case-insensitive, false on a null field
+	public static Term prefix(Field field, String prefix) {
+		checkString(field);
+		return new StringTerm(field, "starts with \"" + prefix + "\"", 3, s -> s.regionMatches(true, 0, prefix, 0, prefix.length()));
+	}
+
+	//Case-insensitive, false on a null field.  Same as f.toLowerCase().contains(part.toLowerCase()) without the copies.
+	public static Term contains(Field field, String part) {
+		checkString(field);
+		return new StringTerm(field, "contains \"" + part + "\"", 8, s -> containsIgnoreCase(s, part));
+	}
+
+	public static Term isNull(Field field) {
+		checkString(field);
+		return new NullTerm(field, true);
+	}
+
+	public static Term notNull(Field field) {
+		checkString(field);
+		return new NullTerm(field, false);
+	}
+
+	public static Term and(Term... terms) {
+		return new Group(true, terms);
+	}
+
+	public static Term or(Term... terms) {
+		return new Group(false, terms);
+	}
+
+	private static void checkString(Field field) {
+		if (field == Field.AGE) {
+			throw new IllegalArgumentException("AGE is not a String field");
+		}
+	}
+
+	static String stringOf(LambdasAndStreams.Customer c, Field field) {
+		switch (field) {
+			case NAME:
+				return c.getName();
+			case PHONE:
+				return c.getPhone();
+			default:
+				return c.getEmail();
+		}
+	}
+
+	//regionMatches(ignoreCase) is slow per call, so it only runs where the first character already matches
+	static boolean containsIgnoreCase(String s, String part) {
+		int n = part.length();
+		if (n == 0) {
+			return true;
+		}
+		char lower = Character.toLowerCase(part.charAt(0));
+		char upper = Character.toUpperCase(part.charAt(0));
+		int last = s.length() - n;
+		for (int i = 0; i <= last; i++) {
+			char ch = s.charAt(i);
+			if ((ch == lower || ch == upper) && s.regionMatches(true, i + 1, part, 1, n - 1)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	//A node of the query.  test() is the fast path; sample() evaluates and measures; replan() re-sorts and/or nodes.
+	public abstract static class Term {
+		//Until there are measurements, terms are ordered by this guess of their relative cost
+		final int guessedCost;
+		final LongAdder sampled = new LongAdder();
+		final LongAdder passed = new LongAdder();
+		final LongAdder nanos = new LongAdder();
+
+		Term(int guessedCost) {
+			this.guessedCost = guessedCost;
+		}
+
+		abstract boolean test(LambdasAndStreams.Customer c);
+
+		boolean sample(LambdasAndStreams.Customer c) {
+			long start = System.nanoTime();
+			boolean result = test(c);
+			record(result, System.nanoTime() - start);
+			return result;
+		}
+
+		final void record(boolean result, long elapsed) {
+			sampled.increment();
+			nanos.add(elapsed);
+			if (result) {
+				passed.increment();
+			}
+		}
+
+		void replan() {
+		}
+
+		//Measured nanos per evaluation less the clock's share, or the guess scaled to roughly nanos until there's data
+		double cost() {
+			long n = sampled.sum();
+			return n == 0 ? guessedCost : Math.max(MIN_COST_NANOS, (double) nanos.sum() / n - clockNanos() * (clockReads() - 1));
+		}
+
+		//System.nanoTime() calls one sample() makes; all but one of them land inside the timed region
+		int clockReads() {
+			return 2;
+		}
+
+		//Fraction of Customers that pass; 0.5 until measured
+		double passRate() {
+			long n = sampled.sum();
+			return n == 0 ? 0.5 : (double) passed.sum() / n;
+		}
+
+		String explain() {
+			return sampled.sum() == 0 ? toString()
+			                    : String.format("%s [pass %.0f%%, %.1f ns]", this, passRate() * 100, cost());
+		}
+	}
+
+	private static final class AgeRange extends Term {
+		private final long min;
+		private final long max;
+
+		AgeRange(long min, long max) {
+			super(1);
+			this.min = min;
+			this.max = max;
+		}
+
+		@Override
+		boolean test(LambdasAndStreams.Customer c) {
+			int age = c.getAge();
+			return age >= min && age < max;
+		}
+
+		@Override
+		public String toString() {
+			if (max == min + 1) {
+				return "AGE = " + min;
+			}
+			return min <= Integer.MIN_VALUE ? "AGE < " + max
+			       : max > Integer.MAX_VALUE ? "AGE >= " + min : min + " <= AGE < " + max;
+		}
+	}
+
+	private static final class StringTerm extends Term {
+		private final Field field;
+		private final String description;
+		private final Predicate<String> onValue;
+
+		StringTerm(Field field, String description, int guessedCost, Predicate<String> onValue) {
+			super(guessedCost);
+			this.field = field;
+			this.description = description;
+			this.onValue = onValue;
+		}
+
+		@Override
+		boolean test(LambdasAndStreams.Customer c) {
+			String s = stringOf(c, field);
+			return s != null && onValue.test(s);
+		}
+
+		@Override
+		public String toString() {
+			return field + " " + description;
+		}
+	}
+
+	private static final class NullTerm extends Term {
+		private final Field field;
+		private final boolean wantNull;
+
+		NullTerm(Field field, boolean wantNull) {
+			super(1);
+			this.field = field;
+			this.wantNull = wantNull;
+		}
+
+		@Override
+		boolean test(LambdasAndStreams.Customer c) {
+			return (stringOf(c, field) == null) == wantNull;
+		}
+
+		@Override
+		public String toString() {
+			return field + (wantNull ? " is null" : " is not null");
+		}
+	}
+
+	private static final class Group extends Term {
+		private final boolean and;
+		//Replaced as a whole by replan(), so a thread in the middle of test() keeps a consistent order
+		private volatile Term[] terms;
+
+		Group(boolean and, Term[] terms) {
+			super(0);
+			if (terms.length == 0) {
+				throw new IllegalArgumentException("and()/or() need at least one term");
+			}
+			this.and = and;
+			//Fuse nested groups of the same kind: and(a, and(b, c)) runs as and(a, b, c)
+			ArrayList<Term> flat = new ArrayList<Term>();
+			for (Term t : terms) {
+				if (t instanceof Group && ((Group) t).and == and) {
+					flat.addAll(Arrays.asList(((Group) t).terms));
+				} else {
+					flat.add(t);
+				}
+			}
+			this.terms = byRank(flat.toArray(new Term[0]));
+		}
+
+		@Override
+		boolean test(LambdasAndStreams.Customer c) {
+			for (Term t : terms) {
+				if (t.test(c) != and) {
+					return !and;
+				}
+			}
+			return and;
+		}
+
+		//Evaluates EVERY term (no short circuit), so each term's pass rate is measured on all Customers and not
+		//only on the ones the earlier terms let through.
+		@Override
+		boolean sample(LambdasAndStreams.Customer c) {
+			long start = System.nanoTime();
+			boolean result = and;
+			for (Term t : terms) {
+				if (t.sample(c) != and) {
+					result = !and;
+				}
+			}
+			record(result, System.nanoTime() - start);
+			return result;
+		}
+
+		@Override
+		int clockReads() {
+			int reads = 2;
+			for (Term t : terms) {
+				reads += t.clockReads();
+			}
+			return reads;
+		}
+
+		@Override
+		void replan() {
+			Term[] current = terms;
+			for (Term t : current) {
+				t.replan();
+			}
+			terms = byRank(current);
+		}
+
+		//A sorted copy.  Other threads keep updating the measurements while this runs, so every rank is read
+		//ONCE up front: sorting on live values could see a term's rank change mid-sort and break the sort's contract.
+		private Term[] byRank(Term[] current) {
+			double[] ranks = new double[current.length];
+			Integer[] order = new Integer[current.length];
+			for (int i = 0; i < current.length; i++) {
+				ranks[i] = rank(current[i]);
+				order[i] = i;
+			}
+			Arrays.sort(order, Comparator.comparingDouble(i -> ranks[i]));
+			Term[] next = new Term[current.length];
+			for (int i = 0; i < next.length; i++) {
+				next[i] = current[order[i]];
+			}
+			return next;
+		}
+
+		//Expected cost per Customer decided: for and() a term decides when it fails, for or() when it passes.
+		//Lowest first.  A term that never decides anything goes last.
+		private double rank(Term t) {
+			double decides = and ? 1 - t.passRate() : t.passRate();
+			double cost = t instanceof Group ? ((Group) t).sumCost() : t.cost();
+			return decides <= 0 ? Double.MAX_VALUE : cost / decides;
+		}
+
+		private double sumCost() {
+			if (sampled.sum() > 0) {
+				return cost();
+			}
+			double sum = 0;
+			for (Term t : terms) {
+				sum += t instanceof Group ? ((Group) t).sumCost() : t.cost();
+			}
+			return sum;
+		}
+
+		@Override
+		String explain() {
+			StringBuilder sb = new StringBuilder(and ? "and(" : "or(");
+			Term[] current = terms;
+			for (int i = 0; i < current.length; i++) {
+				sb.append(i == 0 ? "" : ", ").append(current[i].explain());
+			}
+			return sb.append(')').toString();
+		}
+
+		@Override
+		public String toString() {
+			StringBuilder sb = new StringBuilder(and ? "and(" : "or(");
+			Term[] current = terms;
+			for (int i = 0; i < current.length; i++) {
+				sb.append(i == 0 ? "" : ", ").append(current[i]);
+			}
+			return sb.append(')').toString();
+		}
+	}
+}
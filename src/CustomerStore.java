@@ -0,0 +1,237 @@
+/*
+  CustomerStore: The same data as a List<Customer>, but stored column by column ("struct of arrays").
+  Instead of one heap object per customer, there is one int[] holding every age, one int[] of email
+  domain codes, one char[] of phone lengths, one long[] of normalized phone numbers, etc.  A query like "age > 30" then walks a single int[]
+  front to back instead of chasing a pointer to every Customer.
+
+  Queries return a BitSet of matching row indexes instead of a new ArrayList<Customer>.  Combine them
+  with BitSet.and()/or()/andNot(), and only turn the final answer back into Customers with select().
+  Row i is the i'th Customer of the list the store was built from.
+
+  Email domains are dictionary encoded: every distinct domain (lowercased) is stored once in a small
+  String[] and each row only keeps its int code into that dictionary.  A domain predicate is evaluated
+  once per DISTINCT domain, then the rows are matched by code.  Rows without an email get code -1.  */
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.function.IntPredicate;
+import java.util.function.Predicate;
+
+public class CustomerStore {
+	static final int NO_EMAIL = -1;
+	static final int VALID_PHONE_LENGTH = 10;
+
+	private final int size;
+	private final int[] ages;
+	private final int[] domainCodes;
+	private final String[] domains;
+	private final char[] phoneLengths;
+	private final BitSet validPhones;
+	private final PhoneNumbers.Column phoneNumbers;
+	private final BitSet hasEmail;
+	//Kept so rows can be turned back into Customer objects.  Scans never touch these.
+	private final String[] names;
+	private final String[] phones;
+	private final String[] emails;
+
+	private CustomerStore(List<LambdasAndStreams.Customer> custs) {
+		this.size = custs.size();
+		this.ages = new int[size];
+		this.domainCodes = new int[size];
+		this.phoneLengths = new char[size];
+		this.validPhones = new BitSet(size);
+		this.hasEmail = new BitSet(size);
+		this.names = new String[size];
+		this.phones = new String[size];
+		this.emails = new String[size];
+
+		HashMap<String,Integer> dictionary = new HashMap<String,Integer>();
+		List<String> domainList = new ArrayList<String>();
+		int i = 0;
+		for (LambdasAndStreams.Customer c : custs) {
+			ages[i] = c.getAge();
+			names[i] = c.getName();
+			phones[i] = c.getPhone();
+			emails[i] = c.getEmail();
+			int len = c.getPhone() == null ? 0 : c.getPhone().length();
+			phoneLengths[i] = (char) Math.min(len, Character.MAX_VALUE); //Longer ones never match phoneLengthIs()
+			if (len == VALID_PHONE_LENGTH) {
+				validPhones.set(i);
+			}
+			String domain = emailDomain(c.getEmail());
+			if (domain == null) {
+				domainCodes[i] = NO_EMAIL;
+			} else {
+				hasEmail.set(i);
+				Integer code = dictionary.get(domain);
+				if (code == null) {
+					code = domainList.size();
+					dictionary.put(domain, code);
+					domainList.add(domain);
+				}
+				domainCodes[i] = code;
+			}
+			i++;
+		}
+		this.domains = domainList.toArray(new String[0]);
+		this.phoneNumbers = PhoneNumbers.normalize(custs);
+	}
+
+	public static CustomerStore of(List<LambdasAndStreams.Customer> custs) {
+		return new CustomerStore(custs);
+	}
+
+	//The lowercased part after the last '@', or null if there is no email (or no '@' in it).
+	static String emailDomain(String email) {
+		if (email == null) {
+			return null;
+		}
+		int at = email.lastIndexOf('@');
+		return at < 0 ? null : email.substring(at + 1).toLowerCase();
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public int distinctDomains() {
+		return domains.length;
+	}
+
+	//----------------------------- Age column -----------------------------
+
+	public BitSet ageGreaterThan(int age) {
+		return scanAges(a -> a > age);
+	}
+
+	public BitSet ageLessThan(int age) {
+		return scanAges(a -> a < age);
+	}
+
+	//Inclusive on both ends
+	public BitSet ageBetween(int low, int high) {
+		return scanAges(a -> a >= low && a <= high);
+	}
+
+	//Row index of the oldest customer (first one wins on ties), or -1 if the store is empty.
+	public int maxAgeRow() {
+		int best = -1;
+		int max = Integer.MIN_VALUE;
+		for (int i = 0; i < size; i++) {
+			if (ages[i] > max) {
+				max = ages[i];
+				best = i;
+			}
+		}
+		return best;
+	}
+
+	//Row index of the youngest customer (first one wins on ties), or -1 if the store is empty.
+	public int minAgeRow() {
+		int best = -1;
+		int min = Integer.MAX_VALUE;
+		for (int i = 0; i < size; i++) {
+			if (ages[i] < min) {
+				min = ages[i];
+				best = i;
+			}
+		}
+		return best;
+	}
+
+	//----------------------------- Email column -----------------------------
+
+	public BitSet hasEmail() {
+		return (BitSet) hasEmail.clone();
+	}
+
+	//Exact domain match, ignoring case: emailDomainIs("gmail.com")
+	public BitSet emailDomainIs(String domain) {
+		String wanted = domain.toLowerCase();
+		return emailDomainMatches(d -> d.equals(wanted));
+	}
+
+	//Runs the predicate once per distinct (lowercased) domain, then matches rows by code.
+	//Same result as the tutorial's getEmail().toLowerCase().contains("@gmail") is emailDomainMatches(d -> d.startsWith("gmail"))
+	public BitSet emailDomainMatches(Predicate<String> domainPredicate) {
+		boolean[] matches = new boolean[domains.length];
+		boolean any = false;
+		for (int d = 0; d < domains.length; d++) {
+			matches[d] = domainPredicate.test(domains[d]);
+			any |= matches[d];
+		}
+		if (!any) {
+			return new BitSet(size);
+		}
+		long[] words = new long[(size + 63) >>> 6];
+		for (int i = 0; i < size; i++) {
+			int code = domainCodes[i];
+			if (code != NO_EMAIL && matches[code]) {
+				words[i >>> 6] |= 1L << i;
+			}
+		}
+		return BitSet.valueOf(words);
+	}
+
+	//----------------------------- Phone column -----------------------------
+
+	//Phones of exactly 10 characters, precomputed when the store is built (the noinvalidphonenumbers recipe)
+	public BitSet validPhones() {
+		return (BitSet) validPhones.clone();
+	}
+
+	//Phones that are real phone numbers however they are written ("614-123-4567", "(614) 123 4567", ...), see PhoneNumbers
+	public BitSet validPhoneNumbers() {
+		return phoneNumbers.valid();
+	}
+
+	//The row's phone as E.164 digits (16141234567), or PhoneNumbers.INVALID / PhoneNumbers.NOT_A_NUMBER
+	public long phoneNumberAt(int row) {
+		return phoneNumbers.get(row);
+	}
+
+	//length must be in [0, 65535)
+	public BitSet phoneLengthIs(int length) {
+		if (length < 0 || length >= Character.MAX_VALUE) {
+			throw new IllegalArgumentException("phone length out of range: " + length);
+		}
+		long[] words = new long[(size + 63) >>> 6];
+		for (int i = 0; i < size; i++) {
+			if (phoneLengths[i] == length) {
+				words[i >>> 6] |= 1L << i;
+			}
+		}
+		return BitSet.valueOf(words);
+	}
+
+	//----------------------------- Back to objects -----------------------------
+
+	public LambdasAndStreams.Customer get(int row) {
+		return new LambdasAndStreams.Customer(names[row], phones[row], ages[row], emails[row]);
+	}
+
+	public int ageAt(int row) {
+		return ages[row];
+	}
+
+	//Materializes only the matching rows, in row order.
+	public List<LambdasAndStreams.Customer> select(BitSet rows) {
+		List<LambdasAndStreams.Customer> out = new ArrayList<LambdasAndStreams.Customer>(rows.cardinality());
+		for (int i = rows.nextSetBit(0); i >= 0 && i < size; i = rows.nextSetBit(i + 1)) {
+			out.add(get(i));
+		}
+		return out;
+	}
+
+	//Tight loop over the int[] column filling 64 rows per long, which the JIT can unroll.
+	private BitSet scanAges(IntPredicate keep) {
+		long[] words = new long[(size + 63) >>> 6];
+		for (int i = 0; i < size; i++) {
+			if (keep.test(ages[i])) {
+				words[i >>> 6] |= 1L << i;
+			}
+		}
+		return BitSet.valueOf(words);
+	}
+}
@@ -0,0 +1,248 @@
+/*
+  CustomerView: A filter or aggregate over a LiveCustomerTable that is kept up to date change by change,
+  instead of being recomputed with a full scan every time someone asks.
+
+      CustomerView.Filter over30 = CustomerView.filter(table, c -> c.getAge() > 30);     //custs_over_30
+      CustomerView.Stats ages = CustomerView.stats(table, c -> true, Customer::getAge);    //count/sum/min/max
+      CustomerView.Groups<String> perDomain = CustomerView.groups(table, CustomerGroups.EMAIL_DOMAIN);
+
+  Creating a view scans the table once.  After that, every put/remove/batch on the table costs each view
+  O(log n) for the one Customer that changed, and reading a view (size, count, average, ...) costs nothing.
+  subscribe() to hear what changed: a subscriber gets the Customer that LEFT the view (or null) and the one
+  that ENTERED it (or null); an update of a Customer that stays in the view gets both.
+
+  Views are thread-safe.  They follow the table's ChangeListener rules: changes arrive in the order they
+  were made, on the thread delivering the table's changes, outside the table's locks.  A slow subscriber
+  delays the other views and subscribers, not the writers' locks; one that throws a RuntimeException is
+  reported to the thread's UncaughtExceptionHandler and the others still hear about the change (an Error
+  is not caught).  Attaching a view to a
+  big table replays it on the delivering thread, also outside the locks.
+  A view can also be fed by hand through changed(), without a LiveCustomerTable.  */
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.ToIntFunction;
+
+public abstract class CustomerView implements LiveCustomerTable.ChangeListener {
+	public interface Subscriber {
+		void viewChanged(CustomerView view, int key, LambdasAndStreams.Customer left, LambdasAndStreams.Customer entered);
+	}
+
+	private final Predicate<? super LambdasAndStreams.Customer> where;
+	private final CopyOnWriteArrayList<Subscriber> subscribers = new CopyOnWriteArrayList<Subscriber>();
+	private LiveCustomerTable table;
+
+	CustomerView(Predicate<? super LambdasAndStreams.Customer> where) {
+		this.where = where;
+	}
+
+	public static Filter filter(LiveCustomerTable table, Predicate<? super LambdasAndStreams.Customer> where) {
+		return new Filter(where).attach(table);
+	}
+
+	//Stats of value over the Customers matching where
+	public static Stats stats(LiveCustomerTable table, Predicate<? super LambdasAndStreams.Customer> where,
+	                         ToIntFunction<? super LambdasAndStreams.Customer> value) {
+		return new Stats(where, value).attach(table);
+	}
+
+	//Number of Customers per key (e.g. CustomerGroups.EMAIL_DOMAIN).  A null key is a group like any other.
+	public static <K> Groups<K> groups(LiveCustomerTable table, Function<? super LambdasAndStreams.Customer,? extends K> key) {
+		return new Groups<K>(c -> true, key).attach(table);
+	}
+
+	public void subscribe(Subscriber subscriber) {
+		subscribers.add(subscriber);
+	}
+
+	public void unsubscribe(Subscriber subscriber) {
+		subscribers.remove(subscriber);
+	}
+
+	//Stops following the table.  The view keeps its last state.
+	public void detach() {
+		if (table != null) {
+			table.removeListener(this);
+			table = null;
+		}
+	}
+
+	@Override
+	public final void changed(int key, LambdasAndStreams.Customer before, LambdasAndStreams.Customer after) {
+		LambdasAndStreams.Customer left = before != null && where.test(before) ? before : null;
+		LambdasAndStreams.Customer entered = after != null && where.test(after) ? after : null;
+		if (left == null && entered == null) {
+			return;
+		}
+		apply(key, left, entered);
+		for (Subscriber s : subscribers) {
+			try {
+				s.viewChanged(this, key, left, entered);
+			} catch (RuntimeException e) {
+				Thread t = Thread.currentThread();
+				t.getUncaughtExceptionHandler().uncaughtException(t, e);
+			}
+		}
+	}
+
+	abstract void apply(int key, LambdasAndStreams.Customer left, LambdasAndStreams.Customer entered);
+
+	@SuppressWarnings("unchecked")
+	<V extends CustomerView> V attach(LiveCustomerTable t) {
+		t.addListener(this, true);
+		this.table = t;
+		return (V) this;
+	}
+
+	//----------------------------- Views -----------------------------
+
+	//The Customers matching a predicate, by key.  Reads never lock.
+	public static final class Filter extends CustomerView {
+		private final ConcurrentSkipListMap<Integer,LambdasAndStreams.Customer> rows = new ConcurrentSkipListMap<Integer,LambdasAndStreams.Customer>();
+
+		Filter(Predicate<? super LambdasAndStreams.Customer> where) {
+			super(where);
+		}
+
+		@Override
+		void apply(int key, LambdasAndStreams.Customer left, LambdasAndStreams.Customer entered) {
+			if (entered != null) {
+				rows.put(key, entered);
+			} else {
+				rows.remove(key);
+			}
+		}
+
+		public int size() {
+			return rows.size();
+		}
+
+		public boolean contains(int key) {
+			return rows.containsKey(key);
+		}
+
+		public LambdasAndStreams.Customer get(int key) {
+			return rows.get(key);
+		}
+
+		//A copy, in key order
+		public List<LambdasAndStreams.Customer> customers() {
+			return new ArrayList<LambdasAndStreams.Customer>(rows.values());
+		}
+
+		//Live, read-only, in key order: keys in [from, to)
+		public NavigableMap<Integer,LambdasAndStreams.Customer> range(int from, int to) {
+			return Collections.unmodifiableNavigableMap(rows.subMap(from, true, to, false));
+		}
+	}
+
+	//count/sum/average/min/max of an int value.  min/max can't be undone from a running value when the
+	//current min is removed, so every value's count is kept in a TreeMap (ages: a few dozen entries).
+	public static final class Stats extends CustomerView {
+		private final ToIntFunction<? super LambdasAndStreams.Customer> value;
+		private final TreeMap<Integer,int[]> histogram = new TreeMap<Integer,int[]>();
+		private long count;
+		private long sum;
+
+		Stats(Predicate<? super LambdasAndStreams.Customer> where, ToIntFunction<? super LambdasAndStreams.Customer> value) {
+			super(where);
+			this.value = value;
+		}
+
+		@Override
+		synchronized void apply(int key, LambdasAndStreams.Customer left, LambdasAndStreams.Customer entered) {
+			if (left != null) {
+				int v = value.applyAsInt(left);
+				int[] n = histogram.get(v);
+				if (--n[0] == 0) {
+					histogram.remove(v);
+				}
+				count--;
+				sum -= v;
+			}
+			if (entered != null) {
+				int v = value.applyAsInt(entered);
+				histogram.computeIfAbsent(v, x -> new int[1])[0]++;
+				count++;
+				sum += v;
+			}
+		}
+
+		public synchronized long count() {
+			return count;
+		}
+
+		public synchronized long sum() {
+			return sum;
+		}
+
+		public synchronized double average() {
+			return count == 0 ? 0.0 : (double) sum / count;
+		}
+
+		//Integer.MAX_VALUE when empty, like Aggregates.IntStats
+		public synchronized int min() {
+			return histogram.isEmpty() ? Integer.MAX_VALUE : histogram.firstKey();
+		}
+
+		//Integer.MIN_VALUE when empty
+		public synchronized int max() {
+			return histogram.isEmpty() ? Integer.MIN_VALUE : histogram.lastKey();
+		}
+
+		@Override
+		public synchronized String toString() {
+			return "Stats{count=" + count + ", sum=" + sum + ", min=" + min() + ", max=" + max() + ", average=" + average() + "}";
+		}
+	}
+
+	//Customers per group key
+	public static final class Groups<K> extends CustomerView {
+		private final Function<? super LambdasAndStreams.Customer,? extends K> key;
+		private final HashMap<K,long[]> counts = new HashMap<K,long[]>();
+
+		Groups(Predicate<? super LambdasAndStreams.Customer> where, Function<? super LambdasAndStreams.Customer,? extends K> key) {
+			super(where);
+			this.key = key;
+		}
+
+		@Override
+		synchronized void apply(int id, LambdasAndStreams.Customer left, LambdasAndStreams.Customer entered) {
+			if (left != null) {
+				K k = key.apply(left);
+				long[] n = counts.get(k);
+				if (--n[0] == 0) {
+					counts.remove(k);
+				}
+			}
+			if (entered != null) {
+				counts.computeIfAbsent(key.apply(entered), x -> new long[1])[0]++;
+			}
+		}
+
+		public synchronized long count(K group) {
+			long[] n = counts.get(group);
+			return n == null ? 0 : n[0];
+		}
+
+		//A copy
+		public synchronized Map<K,Long> counts() {
+			HashMap<K,Long> out = new HashMap<K,Long>(counts.size() * 2);
+			counts.forEach((k, n) -> out.put(k, n[0]));
+			return out;
+		}
+
+		@Override
+		public String toString() {
+			return counts().toString();
+		}
+	}
+}
@@ -0,0 +1,279 @@
+/*
+  Distinct: Remove duplicates from an int[], String[] or List<String> without going through the boxed
+  stream().distinct() (which builds a HashSet<Integer> and boxes every element to do it).
+
+  There are three ways to do it for ints, and which one is fastest depends on the data:
+      BITSET - one bit per possible value between min and max.  Unbeatable when the values are dense
+               (IDs 0..n, ages, small codes), useless when they are spread over the whole int range.
+      HASH   - an open addressing hash set of primitive ints.  Works for anything, no boxing.
+      SORTED - if the input is already sorted, duplicates sit next to each other and one pass compacts them.
+               If it isn't sorted (and you don't need the original order), sort a copy first.
+      AUTO   - looks at the data once (min, max, already sorted?) and picks one of the above.
+
+  stable = true keeps the FIRST occurrence of every value in the original order, exactly like
+  stream().distinct().  stable = false lets the result come back in any order, which is cheaper for
+  BITSET and SORTED (they return ascending order).  SORTED on unsorted input can't be stable, so with
+  stable = true it falls back to HASH.
+
+  To dedupe an array you own in place, call sortAndCompact(arr): it sorts arr, moves the distinct values
+  to the front and returns how many there are.  */
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class Distinct {
+	public enum Mode { AUTO, BITSET, HASH, SORTED }
+
+	//A bitset over [min, max] is used while it costs no more than this many bits per input element
+	static final int BITSET_BITS_PER_ELEMENT = 8;
+	static final int MAX_BITSET_RANGE = 1 << 30;
+
+	private Distinct() {
+	}
+
+	//Same result as Arrays.stream(values).distinct().toArray()
+	public static int[] of(int[] values) {
+		return of(values, values.length, Mode.AUTO, true);
+	}
+
+	public static int[] of(int[] values, Mode mode, boolean stable) {
+		return of(values, values.length, mode, stable);
+	}
+
+	//Only looks at values[0 .. length).  Package-private so IntList can pass its backing array.
+	static int[] of(int[] values, int length, Mode mode, boolean stable) {
+		if (length == 0) {
+			return new int[0];
+		}
+		int min = values[0], max = values[0];
+		boolean sorted = true;
+		for (int i = 1; i < length; i++) {
+			int v = values[i];
+			if (v < values[i - 1]) {
+				sorted = false;
+			}
+			if (v < min) {
+				min = v;
+			} else if (v > max) {
+				max = v;
+			}
+		}
+		long range = (long) max - min + 1;
+		if (mode == Mode.AUTO) {
+			if (sorted) {
+				mode = Mode.SORTED;
+			} else if (range <= MAX_BITSET_RANGE && range <= (long) length * BITSET_BITS_PER_ELEMENT) {
+				mode = Mode.BITSET;
+			} else if (!stable) {
+				mode = Mode.SORTED;
+			} else {
+				mode = Mode.HASH;
+			}
+		}
+		switch (mode) {
+			case BITSET:
+				if (range > MAX_BITSET_RANGE) {
+					throw new IllegalArgumentException("Value range " + range + " is too wide for a bitset");
+				}
+				return bitset(values, length, min, (int) range, stable);
+			case SORTED:
+				if (sorted) {
+					int[] out = Arrays.copyOf(values, length);
+					return Arrays.copyOf(out, compact(out, length));
+				}
+				if (!stable) {
+					int[] out = Arrays.copyOf(values, length);
+					return Arrays.copyOf(out, sortAndCompact(out));
+				}
+				return hash(values, length);
+			default:
+				return hash(values, length);
+		}
+	}
+
+	//Sorts values in place and moves each distinct value to the front.  Returns the number of distinct values.
+	public static int sortAndCompact(int[] values) {
+		Arrays.sort(values);
+		return compact(values, values.length);
+	}
+
+	//values[0 .. length) must be sorted.  Removes adjacent duplicates in place, returns the new length.
+	static int compact(int[] values, int length) {
+		if (length == 0) {
+			return 0;
+		}
+		int n = 1;
+		for (int i = 1; i < length; i++) {
+			if (values[i] != values[n - 1]) {
+				values[n++] = values[i];
+			}
+		}
+		return n;
+	}
+
+	private static int[] bitset(int[] values, int length, int min, int range, boolean stable) {
+		long[] bits = new long[(range + 63) >>> 6];
+		if (stable) {
+			int[] out = new int[length];
+			int n = 0;
+			for (int i = 0; i < length; i++) {
+				int v = values[i];
+				int b = v - min;
+				long mask = 1L << b;
+				if ((bits[b >>> 6] & mask) == 0) {
+					bits[b >>> 6] |= mask;
+					out[n++] = v;
+				}
+			}
+			return Arrays.copyOf(out, n);
+		}
+		int count = 0;
+		for (int i = 0; i < length; i++) {
+			int b = values[i] - min;
+			bits[b >>> 6] |= 1L << b;
+		}
+		for (long w : bits) {
+			count += Long.bitCount(w);
+		}
+		//Walk the set bits: the output comes out ascending
+		int[] out = new int[count];
+		int n = 0;
+		for (int w = 0; w < bits.length; w++) {
+			long word = bits[w];
+			while (word != 0) {
+				out[n++] = min + (w << 6) + Long.numberOfTrailingZeros(word);
+				word &= word - 1;
+			}
+		}
+		return out;
+	}
+
+	private static int[] hash(int[] values, int length) {
+		IntHashSet seen = new IntHashSet(length);
+		int[] out = new int[length];
+		int n = 0;
+		for (int i = 0; i < length; i++) {
+			if (seen.add(values[i])) {
+				out[n++] = values[i];
+			}
+		}
+		return Arrays.copyOf(out, n);
+	}
+
+	//----------------------------- Strings -----------------------------
+
+	//Same result as Arrays.stream(values).distinct().toArray(String[]::new) when stable is true.
+	//With stable = false the result is sorted instead.  null is kept (once) like stream().distinct() does.
+	public static String[] of(String[] values, boolean stable) {
+		if (!stable) {
+			String[] sorted = values.clone();
+			//nulls first, then natural order, so adjacent duplicates (including nulls) can be compacted
+			Arrays.sort(sorted, (a, b) -> a == null ? (b == null ? 0 : -1) : (b == null ? 1 : a.compareTo(b)));
+			int n = 0;
+			for (int i = 0; i < sorted.length; i++) {
+				if (n == 0 || !equal(sorted[i], sorted[n - 1])) {
+					sorted[n++] = sorted[i];
+				}
+			}
+			return Arrays.copyOf(sorted, n);
+		}
+		StringHashSet seen = new StringHashSet(values.length);
+		String[] out = new String[values.length];
+		int n = 0;
+		for (String s : values) {
+			if (seen.add(s)) {
+				out[n++] = s;
+			}
+		}
+		return Arrays.copyOf(out, n);
+	}
+
+	public static List<String> of(List<String> values, boolean stable) {
+		return new ArrayList<String>(Arrays.asList(of(values.toArray(new String[0]), stable)));
+	}
+
+	private static boolean equal(String a, String b) {
+		return a == null ? b == null : a.equals(b);
+	}
+
+	//----------------------------- Hash sets -----------------------------
+
+	//Open addressing (linear probing) set of ints.  0 marks an empty slot, so the value 0 itself is tracked
+	//with a separate flag.  The table is sized up front to stay at most half full.
+	static final class IntHashSet {
+		private final int[] table;
+		private final int mask;
+		private boolean hasZero;
+
+		IntHashSet(int expected) {
+			int cap = Integer.highestOneBit(Math.max(4, expected) * 2 - 1) << 1;
+			this.table = new int[cap];
+			this.mask = cap - 1;
+		}
+
+		//true if v was not in the set yet
+		boolean add(int v) {
+			if (v == 0) {
+				if (hasZero) {
+					return false;
+				}
+				hasZero = true;
+				return true;
+			}
+			int slot = mix(v) & mask;
+			int cur;
+			while ((cur = table[slot]) != 0) {
+				if (cur == v) {
+					return false;
+				}
+				slot = (slot + 1) & mask;
+			}
+			table[slot] = v;
+			return true;
+		}
+
+		//Spreads the bits of v so sequential ints don't all land in neighbouring slots
+		private static int mix(int v) {
+			int h = v * 0x9E3779B9;
+			return h ^ (h >>> 16);
+		}
+	}
+
+	//Same idea for Strings, reusing String's cached hashCode.  Stores each String's hash next to it so most
+	//probes are decided by an int compare instead of equals().
+	static final class StringHashSet {
+		private final String[] keys;
+		private final int[] hashes;
+		private final int mask;
+		private boolean hasNull;
+
+		StringHashSet(int expected) {
+			int cap = Integer.highestOneBit(Math.max(4, expected) * 2 - 1) << 1;
+			this.keys = new String[cap];
+			this.hashes = new int[cap];
+			this.mask = cap - 1;
+		}
+
+		boolean add(String s) {
+			if (s == null) {
+				if (hasNull) {
+					return false;
+				}
+				hasNull = true;
+				return true;
+			}
+			int h = s.hashCode();
+			int slot = (h ^ (h >>> 16)) & mask;
+			String cur;
+			while ((cur = keys[slot]) != null) {
+				if (hashes[slot] == h && cur.equals(s)) {
+					return false;
+				}
+				slot = (slot + 1) & mask;
+			}
+			keys[slot] = s;
+			hashes[slot] = h;
+			return true;
+		}
+	}
+}
@@ -0,0 +1,281 @@
+/*
+  EmailDomainIndex: Customer ids by lowercase email domain, so "who has a gmail address" is a lookup
+  instead of getEmail().toLowerCase().contains("@gmail") on every Customer (a lowercase copy of every
+  email, on every query).
+
+  Each domain keeps a sorted int[] of ids (its posting list).  The domains live in a TreeMap keyed by the
+  REVERSED domain ("moc.liamg"), so every domain ending in ".edu" sits in one contiguous range of keys
+  ("ude." ...) and a suffix lookup is a subMap, not a scan over all domains.
+      index.domain("gmail.com")     ids of every ...@gmail.com (any case)
+      index.suffix("edu")           ids of every ...@x.edu, ...@y.z.edu (and ...@edu)
+      index.noEmail()               ids of every Customer without an email
+  Results are sorted int[]s, and union()/intersect() combine them (e.g. with the ids of an age range).
+
+  Built from a List<Customer> (the id is the position in the list) or a Map<Integer,Customer> like
+  cust_table (the id is the map key), then kept current with add()/remove().  An id is in the index at most
+  once: add() of an id that is already there moves it to its new domain.  Not thread-safe: guard it
+  with a lock, or rebuild one per LiveCustomerTable snapshot.  */
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+public class EmailDomainIndex {
+	private static final int[] NONE = new int[0];
+
+	private final TreeMap<String,Postings> byReversedDomain = new TreeMap<String,Postings>();
+	private final Postings noEmail = new Postings(null);
+	//Which posting list each id is in, so an id never ends up in two
+	private final HashMap<Integer,Postings> listOf = new HashMap<Integer,Postings>();
+
+	public EmailDomainIndex() {
+	}
+
+	public static EmailDomainIndex of(List<LambdasAndStreams.Customer> custs) {
+		EmailDomainIndex index = new EmailDomainIndex();
+		int id = 0;
+		for (LambdasAndStreams.Customer c : custs) {
+			index.add(id++, c.getEmail());
+		}
+		return index;
+	}
+
+	public static EmailDomainIndex of(Map<Integer,LambdasAndStreams.Customer> table) {
+		EmailDomainIndex index = new EmailDomainIndex();
+		table.forEach((id, c) -> index.add(id, c.getEmail()));
+		return index;
+	}
+
+	//----------------------------- Updates -----------------------------
+
+	//Adds the id under email's domain.  An id that is already indexed moves there (a changed email).
+	public void add(int id, String email) {
+		String domain = CustomerStore.emailDomain(email);
+		Postings p = domain == null ? noEmail : byReversedDomain.computeIfAbsent(reverse(domain), Postings::new);
+		Postings old = listOf.put(id, p);
+		if (old == p) {
+			return;
+		}
+		if (old != null) {
+			drop(old, id);
+		}
+		p.add(id);
+	}
+
+	//Returns false if the id wasn't there
+	public boolean remove(int id) {
+		Postings p = listOf.remove(id);
+		if (p == null) {
+			return false;
+		}
+		drop(p, id);
+		return true;
+	}
+
+	private void drop(Postings p, int id) {
+		p.remove(id);
+		if (p.size == 0 && p.key != null) {
+			byReversedDomain.remove(p.key);
+		}
+	}
+
+	//----------------------------- Lookups -----------------------------
+
+	//Number of ids in the index
+	public int size() {
+		return listOf.size();
+	}
+
+	//All domains, lowercase, sorted by their reversed form (so subdomains sit next to their parent)
+	public List<String> domains() {
+		List<String> out = new ArrayList<String>(byReversedDomain.size());
+		for (String key : byReversedDomain.keySet()) {
+			out.add(reverse(key));
+		}
+		return out;
+	}
+
+	//Ids with exactly this domain, ignoring case: domain("gmail.com") or domain("@Gmail.com")
+	public int[] domain(String domain) {
+		Postings p = byReversedDomain.get(reverse(normalize(domain)));
+		return p == null ? NONE : p.toArray();
+	}
+
+	public int count(String domain) {
+		Postings p = byReversedDomain.get(reverse(normalize(domain)));
+		return p == null ? 0 : p.size;
+	}
+
+	//Ids whose domain is suffix or ends in "." + suffix: suffix("edu"), suffix("*.edu") and suffix("google.com") all work
+	public int[] suffix(String suffix) {
+		String s = normalize(suffix);
+		if (s.startsWith("*.")) {
+			s = s.substring(2);
+		}
+		String key = reverse(s);
+		List<Postings> matches = new ArrayList<Postings>();
+		Postings exact = byReversedDomain.get(key);
+		if (exact != null) {
+			matches.add(exact);
+		}
+		//Every key starting with key + '.' sorts between key + '.' and key + '/' ('/' is the char after '.')
+		NavigableMap<String,Postings> below = byReversedDomain.subMap(key + '.', true, key + '/', false);
+		matches.addAll(below.values());
+		return concat(matches);
+	}
+
+	//Ids with any of these domains
+	public int[] anyOf(String... domains) {
+		List<Postings> matches = new ArrayList<Postings>(domains.length);
+		for (String d : domains) {
+			Postings p = byReversedDomain.get(reverse(normalize(d)));
+			if (p != null && !matches.contains(p)) {
+				matches.add(p);
+			}
+		}
+		return concat(matches);
+	}
+
+	public int[] noEmail() {
+		return noEmail.toArray();
+	}
+
+	//----------------------------- Combining results -----------------------------
+
+	//Sorted ids in a or b (or both)
+	public static int[] union(int[] a, int[] b) {
+		int[] out = new int[a.length + b.length];
+		int i = 0, j = 0, n = 0;
+		while (i < a.length && j < b.length) {
+			if (a[i] < b[j]) {
+				out[n++] = a[i++];
+			} else if (a[i] > b[j]) {
+				out[n++] = b[j++];
+			} else {
+				out[n++] = a[i++];
+				j++;
+			}
+		}
+		while (i < a.length) {
+			out[n++] = a[i++];
+		}
+		while (j < b.length) {
+			out[n++] = b[j++];
+		}
+		return n == out.length ? out : Arrays.copyOf(out, n);
+	}
+
+	//Sorted ids in both a and b.  When one side is much smaller, its ids are binary searched in the other.
+	public static int[] intersect(int[] a, int[] b) {
+		if (a.length > b.length) {
+			int[] t = a;
+			a = b;
+			b = t;
+		}
+		int[] out = new int[a.length];
+		int n = 0;
+		if ((long) a.length * 32 < b.length) {
+			int from = 0;
+			for (int v : a) {
+				int at = Arrays.binarySearch(b, from, b.length, v);
+				if (at >= 0) {
+					out[n++] = v;
+					from = at + 1;
+				} else {
+					from = -at - 1;
+				}
+			}
+		} else {
+			int i = 0, j = 0;
+			while (i < a.length && j < b.length) {
+				if (a[i] < b[j]) {
+					i++;
+				} else if (a[i] > b[j]) {
+					j++;
+				} else {
+					out[n++] = a[i++];
+					j++;
+				}
+			}
+		}
+		return Arrays.copyOf(out, n);
+	}
+
+	//----------------------------- Internals -----------------------------
+
+	//add() keeps every id in exactly one posting list, so merging lists from different domains never meets a duplicate
+	private static int[] concat(List<Postings> lists) {
+		if (lists.isEmpty()) {
+			return NONE;
+		}
+		if (lists.size() == 1) {
+			return lists.get(0).toArray();
+		}
+		int total = 0;
+		for (Postings p : lists) {
+			total += p.size;
+		}
+		int[] out = new int[total];
+		int n = 0;
+		for (Postings p : lists) {
+			System.arraycopy(p.ids, 0, out, n, p.size);
+			n += p.size;
+		}
+		Sorting.sort(out);
+		return out;
+	}
+
+	//"@Gmail.COM" -> "gmail.com"
+	private static String normalize(String domain) {
+		String d = domain.trim().toLowerCase();
+		return d.startsWith("@") ? d.substring(1) : d;
+	}
+
+	private static String reverse(String domain) {
+		return new StringBuilder(domain).reverse().toString();
+	}
+
+	//Sorted ids, growing like an ArrayList.  Ids usually arrive in increasing order, which makes add() an append.
+	private static final class Postings {
+		final String key; //the reversed domain, null for the no-email list
+		int[] ids = new int[4];
+		int size;
+
+		Postings(String key) {
+			this.key = key;
+		}
+
+		boolean add(int id) {
+			int at = size > 0 && ids[size - 1] < id ? size : Arrays.binarySearch(ids, 0, size, id);
+			if (at < 0) {
+				at = -at - 1;
+			} else if (at < size) {
+				return false; //already there
+			}
+			if (size == ids.length) {
+				ids = Arrays.copyOf(ids, size + (size >> 1) + 1);
+			}
+			System.arraycopy(ids, at, ids, at + 1, size - at);
+			ids[at] = id;
+			size++;
+			return true;
+		}
+
+		boolean remove(int id) {
+			int at = Arrays.binarySearch(ids, 0, size, id);
+			if (at < 0) {
+				return false;
+			}
+			System.arraycopy(ids, at + 1, ids, at, size - at - 1);
+			size--;
+			return true;
+		}
+
+		int[] toArray() {
+			return Arrays.copyOf(ids, size);
+		}
+	}
+}
@@ -0,0 +1,411 @@
+/*
+  Enrichment: A stream stage that looks something up for every element (a credit score, a geo for the phone
+  prefix, ...) from a slow service, many lookups at a time, without blocking a ForkJoinPool worker per call.
+
+      Enrichment<Customer,Integer> credit = Enrichment.of(creditService::score)
+                                                       .concurrency(256).timeout(200, TimeUnit.MILLISECONDS);
+      try (Stream<Enrichment.Result<Customer,Integer>> scored = credit.apply(custs.stream())) {
+          scored.filter(Enrichment.Result::isOk).forEach(r -> ...r.input()... r.value()...);
+      }
+
+  map(creditService::score) waits for each answer before asking the next question, and .parallel() only
+  asks as many at a time as there are cores (and parks those ForkJoinPool workers while they wait).  An
+  Enrichment keeps up to concurrency() lookups in flight on their own threads: virtual threads when the JDK
+  has them (21+), otherwise a cached pool of daemon threads.  Either way the number of lookups waiting at
+  once is set by concurrency(), not by the number of cores.
+
+  - Micro-batching: ofBatches(service::scores) with batchSize(32) sends the next 32 elements as ONE request.
+    A batch is just the next elements of the stream; nothing waits for a batch to fill up except the source.
+  - Order: results come out in INPUT order (a slow lookup holds back the ones behind it) or in COMPLETION
+    order (whatever answers first comes out first).
+  - Failures never end the stream.  Every element gets a Result: its value, or the lookup's exception, or a
+    TimeoutException when no answer came within timeout() of sending the request (the lookup's thread is
+    interrupted; one that ignores the interrupt keeps its place in concurrency() until it returns).  All
+    elements of a batch share its request's outcome.
+  The source is pulled lazily, only as fast as the consumer takes results, so at most concurrency() *
+  batchSize() elements are in flight.  Close the stream (try-with-resources) to cancel unfinished lookups.  */
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+public class Enrichment<T,R> {
+	public enum Order { INPUT, COMPLETION }
+
+	static final int DEFAULT_CONCURRENCY = 64;
+	static final int DEFAULT_BATCH_SIZE = 32;
+
+	private static final Executor SHARED = defaultExecutor();
+	private static final boolean VIRTUAL = !(SHARED instanceof ThreadPoolExecutor);
+
+	private final Function<? super List<T>,? extends List<? extends R>> lookup;
+	private int concurrency = DEFAULT_CONCURRENCY;
+	private int batchSize;
+	private long timeoutNanos; //0: wait as long as it takes
+	private Order order = Order.INPUT;
+	private Executor executor = SHARED;
+
+	private Enrichment(Function<? super List<T>,? extends List<? extends R>> lookup, int batchSize) {
+		this.lookup = lookup;
+		this.batchSize = batchSize;
+	}
+
+	//One request per element
+	public static <T,R> Enrichment<T,R> of(Function<? super T,? extends R> lookup) {
+		return new Enrichment<T,R>(batch -> {
+			List<R> out = new ArrayList<R>(batch.size());
+			for (T t : batch) {
+				out.add(lookup.apply(t));
+			}
+			return out;
+		}, 1);
+	}
+
+	//One request per batch of elements.  The lookup must return one result per input, in the same order.
+	public static <T,R> Enrichment<T,R> ofBatches(Function<? super List<T>,? extends List<? extends R>> lookup) {
+		return new Enrichment<T,R>(lookup, DEFAULT_BATCH_SIZE);
+	}
+
+	//True when lookups run on virtual threads, false when on the platform thread pool
+	public static boolean usesVirtualThreads() {
+		return VIRTUAL;
+	}
+
+	//----------------------------- Settings -----------------------------
+
+	//Requests in flight at once
+	public Enrichment<T,R> concurrency(int requests) {
+		if (requests < 1) {
+			throw new IllegalArgumentException("concurrency must be at least 1: " + requests);
+		}
+		this.concurrency = requests;
+		return this;
+	}
+
+	//Elements per request.  Only worth more than 1 with ofBatches(): of() would just look them up one after another.
+	public Enrichment<T,R> batchSize(int elements) {
+		if (elements < 1) {
+			throw new IllegalArgumentException("batchSize must be at least 1: " + elements);
+		}
+		this.batchSize = elements;
+		return this;
+	}
+
+	//Per request, counted from when it is sent.  0 (the default) waits forever.
+	public Enrichment<T,R> timeout(long time, TimeUnit unit) {
+		if (time < 0) {
+			throw new IllegalArgumentException("timeout must not be negative: " + time);
+		}
+		this.timeoutNanos = unit.toNanos(time);
+		return this;
+	}
+
+	public Enrichment<T,R> order(Order order) {
+		this.order = order;
+		return this;
+	}
+
+	//Runs the lookups on this executor instead.  It must start every request right away (no queue behind a
+	//fixed number of threads), or requests time out while they wait for a thread.
+	public Enrichment<T,R> executor(Executor executor) {
+		this.executor = executor;
+		return this;
+	}
+
+	//----------------------------- Running -----------------------------
+
+	//A lazy, sequential stream of one Result per source element.  Closing it closes the source too.
+	//The settings are copied here: changing them later doesn't affect streams already returned.
+	public Stream<Result<T,R>> apply(Stream<? extends T> source) {
+		Run run = new Run(source.iterator(), concurrency, batchSize, timeoutNanos, order, executor);
+		Spliterator<Result<T,R>> split = new Spliterators.AbstractSpliterator<Result<T,R>>(
+				Long.MAX_VALUE, (run.order == Order.INPUT ? Spliterator.ORDERED : 0) | Spliterator.NONNULL) {
+			@Override
+			public boolean tryAdvance(Consumer<? super Result<T,R>> action) {
+				Result<T,R> r = run.next();
+				if (r == null) {
+					return false;
+				}
+				action.accept(r);
+				return true;
+			}
+		};
+		return StreamSupport.stream(split, false).onClose(run::close).onClose(source::close);
+	}
+
+	//What came back for one element: a value, or why there is none
+	public static final class Result<T,R> {
+		private final T input;
+		private final R value;
+		private final Throwable error;
+
+		Result(T input, R value, Throwable error) {
+			this.input = input;
+			this.value = value;
+			this.error = error;
+		}
+
+		public T input() {
+			return input;
+		}
+
+		//null when !isOk()
+		public R value() {
+			return value;
+		}
+
+		//The lookup's exception, a TimeoutException, or null when isOk()
+		public Throwable error() {
+			return error;
+		}
+
+		public boolean isOk() {
+			return error == null;
+		}
+
+		public boolean isTimedOut() {
+			return error instanceof TimeoutException;
+		}
+
+		public R orElse(R fallback) {
+			return error == null ? value : fallback;
+		}
+
+		@Override
+		public String toString() {
+			return error == null ? input + " -> " + value : input + " -> " + error;
+		}
+	}
+
+	//----------------------------- Internals -----------------------------
+
+	//One request: its elements, and when it runs out of time.  It holds one of the run's slots until its Results
+	//are out AND its thread has left the lookup: a timed-out lookup that ignores the interrupt still counts.
+	private final class Pending extends FutureTask<List<? extends R>> {
+		final List<T> batch;
+		final BlockingQueue<Pending> done;
+		private final Semaphore slots;
+		private final AtomicInteger holds = new AtomicInteger(2);
+		long deadline;
+
+		Pending(List<T> batch, BlockingQueue<Pending> done, Semaphore slots) {
+			super(() -> lookup.apply(batch));
+			this.batch = batch;
+			this.done = done;
+			this.slots = slots;
+		}
+
+		@Override
+		public void run() {
+			try {
+				super.run();
+			} finally {
+				release();
+			}
+		}
+
+		@Override
+		protected void done() {
+			if (done != null) {
+				done.offer(this);
+			}
+		}
+
+		//Called once when the lookup returns and once when the request is settled; the second gives the slot back
+		void release() {
+			if (holds.decrementAndGet() == 0) {
+				slots.release();
+			}
+		}
+	}
+
+	//The state of one apply(), with its own copy of the settings.  Only the consuming thread touches it,
+	//except the done queue.
+	private final class Run {
+		private final Iterator<? extends T> source;
+		private final int batchSize;
+		private final long timeoutNanos;
+		private final Order order;
+		private final Executor executor;
+		//Requests sent and not settled, in the order they were sent, which is also the order of their deadlines.
+		//A set so COMPLETION order can take out whichever finishes in O(1).
+		private final LinkedHashSet<Pending> inFlight = new LinkedHashSet<Pending>();
+		private final BlockingQueue<Pending> done;
+		private final Semaphore slots;
+		private final ArrayDeque<Result<T,R>> ready = new ArrayDeque<Result<T,R>>();
+		private boolean closed;
+
+		Run(Iterator<? extends T> source, int concurrency, int batchSize, long timeoutNanos, Order order, Executor executor) {
+			this.source = source;
+			this.batchSize = batchSize;
+			this.timeoutNanos = timeoutNanos;
+			this.order = order;
+			this.executor = executor;
+			this.done = order == Order.COMPLETION ? new LinkedBlockingQueue<Pending>() : null;
+			this.slots = new Semaphore(concurrency);
+		}
+
+		Result<T,R> next() {
+			while (ready.isEmpty()) {
+				if (closed) {
+					return null;
+				}
+				try {
+					send();
+					if (inFlight.isEmpty()) {
+						return null;
+					}
+					if (order == Order.INPUT) {
+						awaitOldest();
+					} else {
+						awaitAny();
+					}
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					close();
+					throw new IllegalStateException("Interrupted while waiting for lookups", e);
+				}
+			}
+			return ready.poll();
+		}
+
+		//Tops the requests in flight back up to concurrency.  Waits for a slot only when nothing is in flight,
+		//i.e. every slot is held by a timed-out lookup that hasn't returned yet.
+		private void send() throws InterruptedException {
+			while (source.hasNext()) {
+				if (!slots.tryAcquire()) {
+					if (!inFlight.isEmpty()) {
+						return;
+					}
+					slots.acquire();
+				}
+				List<T> batch = new ArrayList<T>(batchSize);
+				while (batch.size() < batchSize && source.hasNext()) {
+					batch.add(source.next());
+				}
+				Pending p = new Pending(batch, done, slots);
+				p.deadline = System.nanoTime() + timeoutNanos;
+				inFlight.add(p);
+				executor.execute(p);
+			}
+		}
+
+		private void awaitOldest() throws InterruptedException {
+			Pending p = oldest();
+			inFlight.remove(p);
+			try {
+				if (timeoutNanos == 0) {
+					p.get();
+				} else {
+					p.get(Math.max(0, p.deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+				}
+			} catch (TimeoutException e) {
+				settle(p, true);
+				return;
+			} catch (ExecutionException | CancellationException e) {
+				//settle() reads the outcome
+			}
+			settle(p, false);
+		}
+
+		//Whatever finishes first, or the oldest request once its deadline passes
+		private void awaitAny() throws InterruptedException {
+			while (true) {
+				Pending oldest = oldest();
+				Pending p;
+				if (timeoutNanos == 0) {
+					p = done.take();
+				} else {
+					long left = oldest.deadline - System.nanoTime();
+					p = left <= 0 ? done.poll() : done.poll(left, TimeUnit.NANOSECONDS);
+					if (p == null) {
+						inFlight.remove(oldest);
+						settle(oldest, true);
+						return;
+					}
+				}
+				//A request that already timed out arrives here too, when it gets cancelled: skip it
+				if (inFlight.remove(p)) {
+					settle(p, false);
+					return;
+				}
+			}
+		}
+
+		private Pending oldest() {
+			return inFlight.iterator().next();
+		}
+
+		//Turns a request's outcome into one Result per element.  The caller has taken p out of inFlight.
+		private void settle(Pending p, boolean timedOut) {
+			p.release();
+			//A request can finish just as its deadline passes; if cancel() fails, its answer is there
+			if (timedOut && !p.cancel(true)) {
+				timedOut = false;
+			}
+			List<? extends R> values = null;
+			Throwable error = null;
+			if (timedOut) {
+				error = new TimeoutException("No answer within " + TimeUnit.NANOSECONDS.toMillis(timeoutNanos) + " ms");
+			} else {
+				try {
+					values = p.get();
+					if (values == null || values.size() != p.batch.size()) {
+						error = new IllegalStateException("Lookup returned " + (values == null ? "null" : values.size() + " results")
+						                                  + " for " + p.batch.size() + " inputs");
+					}
+				} catch (ExecutionException e) {
+					error = e.getCause();
+				} catch (CancellationException | InterruptedException e) {
+					error = e;
+				}
+			}
+			for (int i = 0; i < p.batch.size(); i++) {
+				ready.add(new Result<T,R>(p.batch.get(i), error == null ? values.get(i) : null, error));
+			}
+		}
+
+		void close() {
+			closed = true;
+			for (Pending p : inFlight) {
+				p.cancel(true);
+			}
+			inFlight.clear();
+			ready.clear();
+		}
+	}
+
+	//Executors.newVirtualThreadPerTaskExecutor() is looked up by reflection so this still compiles and runs
+	//on JDKs without it.  The fallback pool grows as needed: at most concurrency() threads per running stream.
+	private static Executor defaultExecutor() {
+		try {
+			return (Executor) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		} catch (ReflectiveOperationException | RuntimeException e) {
+			AtomicInteger threads = new AtomicInteger();
+			return Executors.newCachedThreadPool(r -> {
+				Thread t = new Thread(r, "enrichment-" + threads.incrementAndGet());
+				t.setDaemon(true);
+				return t;
+			});
+		}
+	}
+}
@@ -0,0 +1,161 @@
+/*
+  EntryRanking: Highest/lowest entry and top-K queries over a Map<K,Integer>, without a stream.
+
+  - maxByValue/minByValue/maxByKey/minByKey make ONE pass over entrySet() with a plain loop.  Ties go to
+    whichever entry the map iterates first, the same as stream().max(Entry.comparingByValue()).
+  - topByValue/bottomByValue keep only the best k entries in a small array heap while walking the map,
+    so finding the top 10 of a million entries never sorts (or copies) the million.
+  Values are compared as plain ints (no subtraction), so there is no overflow and equal values really are equal.
+  Null values are not allowed (they throw a NullPointerException, like Entry.comparingByValue()).
+
+  If you ask the same map for its max over and over while it changes, use RankedMap instead.  */
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Optional;
+
+public class EntryRanking {
+	private EntryRanking() {
+	}
+
+	public static <K> Optional<Entry<K,Integer>> maxByValue(Map<K,Integer> map) {
+		return extremeByValue(map, true);
+	}
+
+	public static <K> Optional<Entry<K,Integer>> minByValue(Map<K,Integer> map) {
+		return extremeByValue(map, false);
+	}
+
+	public static <K extends Comparable<? super K>, V> Optional<Entry<K,V>> maxByKey(Map<K,V> map) {
+		return extremeByKey(map, true);
+	}
+
+	public static <K extends Comparable<? super K>, V> Optional<Entry<K,V>> minByKey(Map<K,V> map) {
+		return extremeByKey(map, false);
+	}
+
+	//The k entries with the highest values, highest first
+	public static <K> List<Entry<K,Integer>> topByValue(Map<K,Integer> map, int k) {
+		return select(map, k, true);
+	}
+
+	//The k entries with the lowest values, lowest first
+	public static <K> List<Entry<K,Integer>> bottomByValue(Map<K,Integer> map, int k) {
+		return select(map, k, false);
+	}
+
+	private static <K> Optional<Entry<K,Integer>> extremeByValue(Map<K,Integer> map, boolean highest) {
+		Entry<K,Integer> best = null;
+		int bestValue = 0;
+		for (Entry<K,Integer> e : map.entrySet()) {
+			int v = e.getValue();
+			if (best == null || (highest ? v > bestValue : v < bestValue)) {
+				best = e;
+				bestValue = v;
+			}
+		}
+		return Optional.ofNullable(best);
+	}
+
+	private static <K extends Comparable<? super K>, V> Optional<Entry<K,V>> extremeByKey(Map<K,V> map, boolean highest) {
+		Entry<K,V> best = null;
+		for (Entry<K,V> e : map.entrySet()) {
+			if (best == null) {
+				best = e;
+				continue;
+			}
+			int c = e.getKey().compareTo(best.getKey());
+			if (highest ? c > 0 : c < 0) {
+				best = e;
+			}
+		}
+		return Optional.ofNullable(best);
+	}
+
+	//Bounded heap of size k whose ROOT is the worst entry kept so far (smallest value for top-k, largest for
+	//bottom-k).  Each new entry is compared against the root only; the heap is touched only when it wins.
+	//Values are stored in an int[] next to the entries so comparisons never unbox.
+	@SuppressWarnings("unchecked")
+	private static <K> List<Entry<K,Integer>> select(Map<K,Integer> map, int k, boolean highest) {
+		if (k < 0) {
+			throw new IllegalArgumentException("k must not be negative: " + k);
+		}
+		int cap = Math.min(k, map.size());
+		if (cap == 0) {
+			return Collections.emptyList();
+		}
+		Entry<K,Integer>[] heap = (Entry<K,Integer>[]) new Entry<?,?>[cap];
+		int[] values = new int[cap];
+		int size = 0;
+		for (Entry<K,Integer> e : map.entrySet()) {
+			int v = e.getValue();
+			if (size < cap) {
+				heap[size] = e;
+				values[size] = v;
+				siftUp(heap, values, size++, highest);
+			} else if (better(v, values[0], highest)) {
+				heap[0] = e;
+				values[0] = v;
+				siftDown(heap, values, size, highest);
+			}
+		}
+		//Pop the heap from worst to best, filling the result from the back.
+		Entry<K,Integer>[] out = (Entry<K,Integer>[]) new Entry<?,?>[size];
+		for (int n = size; n > 0; n--) {
+			out[n - 1] = heap[0];
+			heap[0] = heap[n - 1];
+			values[0] = values[n - 1];
+			siftDown(heap, values, n - 1, highest);
+		}
+		List<Entry<K,Integer>> result = new ArrayList<Entry<K,Integer>>(size);
+		Collections.addAll(result, out);
+		return result;
+	}
+
+	//true if a should rank ahead of b
+	private static boolean better(int a, int b, boolean highest) {
+		return highest ? a > b : a < b;
+	}
+
+	private static <K> void siftUp(Entry<K,Integer>[] heap, int[] values, int i, boolean highest) {
+		while (i > 0) {
+			int parent = (i - 1) >>> 1;
+			if (!better(values[parent], values[i], highest)) {
+				break;
+			}
+			swap(heap, values, i, parent);
+			i = parent;
+		}
+	}
+
+	private static <K> void siftDown(Entry<K,Integer>[] heap, int[] values, int size, boolean highest) {
+		int i = 0;
+		while (true) {
+			int left = 2 * i + 1;
+			if (left >= size) {
+				break;
+			}
+			int worst = left;
+			int right = left + 1;
+			if (right < size && better(values[left], values[right], highest)) {
+				worst = right;
+			}
+			if (!better(values[i], values[worst], highest)) {
+				break;
+			}
+			swap(heap, values, i, worst);
+			i = worst;
+		}
+	}
+
+	private static <K> void swap(Entry<K,Integer>[] heap, int[] values, int i, int j) {
+		Entry<K,Integer> e = heap[i];
+		heap[i] = heap[j];
+		heap[j] = e;
+		int v = values[i];
+		values[i] = values[j];
+		values[j] = v;
+	}
+}
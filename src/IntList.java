@@ -0,0 +1,229 @@
+/*
+  IntList: A growable list of primitive ints.  Use it where the tutorial goes
+  int[] -> boxed() -> ArrayList<Integer> -> mapToInt(v -> v) -> int[].
+  Every Integer in an ArrayList<Integer> is its own object on the heap, so converting
+  or deduplicating millions of ints that way creates millions of objects of garbage.
+  An IntList stores the values in a single int[] and never boxes.
+
+  Operations that read like stream operations (distinct, sorted, map, filter, ...) return a NEW IntList,
+  the same way a stream would.  Operations that read like Collections methods (shuffle, reverse)
+  change the list in place, the same way Collections.shuffle/Collections.reverse do.  */
+import java.util.Arrays;
+import java.util.Random;
+import java.util.function.IntConsumer;
+import java.util.function.IntPredicate;
+import java.util.function.IntUnaryOperator;
+import java.util.stream.IntStream;
+
+public class IntList {
+	private static final int[] EMPTY = new int[0];
+	private static final Random SHUFFLE_RANDOM = new Random();
+
+	private int[] data;
+	private int size;
+
+	public IntList() {
+		this.data = EMPTY;
+	}
+
+	public IntList(int capacity) {
+		if (capacity < 0) {
+			throw new IllegalArgumentException("Negative capacity: " + capacity);
+		}
+		this.data = capacity == 0 ? EMPTY : new int[capacity];
+	}
+
+	//Wraps the values without copying them.  Use from() if the caller keeps using the array.
+	private IntList(int[] data, int size) {
+		this.data = data;
+		this.size = size;
+	}
+
+	public static IntList of(int... values) {
+		return from(values);
+	}
+
+	//Copies a primitive int[] into a new IntList (replaces Arrays.stream(arr).boxed().collect(...))
+	public static IntList from(int[] values) {
+		return new IntList(values.clone(), values.length);
+	}
+
+	//Collects an IntStream into an IntList without boxing (replaces stream.boxed().collect(Collectors.toCollection(ArrayList::new)))
+	public static IntList collect(IntStream stream) {
+		return stream.collect(IntList::new, IntList::add, IntList::addAll);
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	public int get(int index) {
+		checkIndex(index);
+		return data[index];
+	}
+
+	public int set(int index, int value) {
+		checkIndex(index);
+		int old = data[index];
+		data[index] = value;
+		return old;
+	}
+
+	public void add(int value) {
+		if (size == data.length) {
+			grow(size + 1);
+		}
+		data[size++] = value;
+	}
+
+	public void addAll(int[] values) {
+		ensureCapacity(size + values.length);
+		System.arraycopy(values, 0, data, size, values.length);
+		size += values.length;
+	}
+
+	public void addAll(IntList other) {
+		ensureCapacity(size + other.size);
+		System.arraycopy(other.data, 0, data, size, other.size);
+		size += other.size;
+	}
+
+	public void clear() {
+		size = 0;
+	}
+
+	public void ensureCapacity(int minCapacity) {
+		if (minCapacity > data.length) {
+			grow(minCapacity);
+		}
+	}
+
+	//Streams over the backing array directly, no copy and no boxing.
+	public IntStream stream() {
+		return Arrays.stream(data, 0, size);
+	}
+
+	public void forEach(IntConsumer action) {
+		for (int i = 0; i < size; i++) {
+			action.accept(data[i]);
+		}
+	}
+
+	//Replaces list.stream().mapToInt(v -> v).toArray()
+	public int[] toArray() {
+		return Arrays.copyOf(data, size);
+	}
+
+	//Keeps the FIRST occurrence of every value, in the original order (same result as stream().distinct()).
+	//See Distinct.java for how it picks between a bitset, a hash set and a sorted compact.
+	public IntList distinct() {
+		int[] out = Distinct.of(data, size, Distinct.Mode.AUTO, true);
+		return new IntList(out, out.length);
+	}
+
+	//Least to greatest, like stream().sorted()
+	public IntList sorted() {
+		int[] out = toArray();
+		Sorting.sort(out);
+		return new IntList(out, out.length);
+	}
+
+	//Greatest to least, like stream().sorted(Comparator.reverseOrder()) but without boxing
+	public IntList sortedDescending() {
+		int[] out = toArray();
+		Sorting.sortDescending(out);
+		return new IntList(out, out.length);
+	}
+
+	public IntList map(IntUnaryOperator mapper) {
+		int[] out = new int[size];
+		for (int i = 0; i < size; i++) {
+			out[i] = mapper.applyAsInt(data[i]);
+		}
+		return new IntList(out, size);
+	}
+
+	public IntList filter(IntPredicate keep) {
+		int[] out = new int[size];
+		int n = 0;
+		for (int i = 0; i < size; i++) {
+			if (keep.test(data[i])) {
+				out[n++] = data[i];
+			}
+		}
+		return new IntList(out, n);
+	}
+
+	//In place, like Collections.shuffle(list)
+	public void shuffle() {
+		shuffle(SHUFFLE_RANDOM);
+	}
+
+	//In place, like Collections.shuffle(list, rnd).  Fisher-Yates, same as the JDK.
+	public void shuffle(Random rnd) {
+		for (int i = size - 1; i > 0; i--) {
+			int j = rnd.nextInt(i + 1);
+			int t = data[i];
+			data[i] = data[j];
+			data[j] = t;
+		}
+	}
+
+	//In place, like Collections.reverse(list)
+	public void reverse() {
+		for (int i = 0, j = size - 1; i < j; i++, j--) {
+			int t = data[i];
+			data[i] = data[j];
+			data[j] = t;
+		}
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (this == o) {
+			return true;
+		}
+		if (!(o instanceof IntList)) {
+			return false;
+		}
+		IntList other = (IntList) o;
+		return Arrays.equals(data, 0, size, other.data, 0, other.size);
+	}
+
+	@Override
+	public int hashCode() {
+		int h = 1;
+		for (int i = 0; i < size; i++) {
+			h = 31 * h + data[i];
+		}
+		return h;
+	}
+
+	//Prints the same way an ArrayList<Integer> does: [1, 2, 3]
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder(size * 4 + 2).append('[');
+		for (int i = 0; i < size; i++) {
+			if (i > 0) {
+				sb.append(", ");
+			}
+			sb.append(data[i]);
+		}
+		return sb.append(']').toString();
+	}
+
+	private void grow(int minCapacity) {
+		int newCap = Math.max(minCapacity, data.length + (data.length >> 1) + 1);
+		data = Arrays.copyOf(data, newCap);
+	}
+
+	private void checkIndex(int index) {
+		if (index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+		}
+	}
+}
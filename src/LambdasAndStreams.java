@@ -7,9 +7,14 @@
           examples that actual come up in practical scenarios are shown here.  This guide should STREAMLINE you (pun intended) into knowledge on streams.
                     
 IMPORTS: Please review these Collections before continuing with the tutorial, if you are not confident on these.  */         
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.AbstractMap;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.Comparator; //<-- Definitely research and understand Comparator first if you have never created a Comparator.
 import java.util.Hashtable;
@@ -18,6 +23,7 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Supplier;
 import java.util.stream.*;
 import java.util.Collections;
@@ -46,6 +52,10 @@ public class LambdasAndStreams {
 		//Maximum value of a primitive int[]: 
 		int max = Arrays.stream(orig_int_arr).max().orElse(-1); 
 		System.out.println("Find max of a primitive int[]: " + max);
+
+		//Count, min, max AND where they are, in ONE pass instead of one pass each (see Aggregates.java):
+		Aggregates.IntStats stats = Aggregates.of(orig_int_arr);
+		System.out.println("Count, min, max and average of a primitive int[] in one pass: " + stats);
 		
 		//Minimum value of a List<Integer>: 
 		List<Integer> orig_list = List.of(1,2,3,4,5,6,7,8,9,10,9,8,7,6,5,4,3,2,1,100,1000);
@@ -88,6 +98,9 @@ public class LambdasAndStreams {
 		//REMOVE all duplicates from a primitive int[]:
 		prim_list = Arrays.stream(prim_list).distinct().toArray();
 		System.out.println("Remove all duplicates from a primitive int[]: " + Arrays.toString(prim_list));
+		//The same without the stream (see Distinct.java).  It checks the values once and picks a bitset, a hash set
+		//or a sorted compact, none of which box an Integer per element the way boxed().distinct() does.
+		System.out.println("Remove all duplicates from a primitive int[] with Distinct: " + Arrays.toString(Distinct.of(new int[] {5,3,5,1,3,9,1})));
 		
 		//REMOVE all duplicates from a List<Integer>:
 		al_integer = al_integer.stream().distinct().collect(Collectors.toCollection(ArrayList::new));
@@ -170,6 +183,8 @@ public class LambdasAndStreams {
 		ArrayList<Integer> unsorted_al = new ArrayList<Integer>(List.of(5,4,3,2,1,2,3,4,5,6,7,8,9,10));
 		unsorted_al = unsorted_al.stream().sorted(Comparator.reverseOrder()).collect(Collectors.toCollection(ArrayList::new));
 		System.out.println("Sort an ArrayList<Integer> from greatest to least: " + unsorted_al);
+		//The same without boxing: sort the ints, greatest first (see Sorting.java)
+		System.out.println("Sort an IntList from greatest to least: " + IntList.of(5,4,3,2,1,2,3,4,5,6,7,8,9,10).sortedDescending());
 		
 		//Sort a primitive String[] lexicographically:
 		String[] prim_strings = new String[] {"def","abc","jik", "geh"};
@@ -217,6 +232,14 @@ public class LambdasAndStreams {
 		Customer min_name_cust = custs.stream().min(Comparator.comparing(Customer::getName)).orElse(def_customer);
 		System.out.println("Find Customer with the lowest alphanumeric name in List<Customer>: " 
 		                   + min_name_cust.getName() + " " + min_name_cust.getAge());
+
+		//All four of the Customer questions above in ONE pass over the list instead of four (see Aggregates.java):
+		Aggregates.Stats<Customer,String> cust_stats = custs.stream().collect(Aggregates.stats(Customer::getAge, Customer::getName));
+		Aggregates.IntStats age_stats = cust_stats.ints();
+		Aggregates.KeyStats<Customer,String> name_stats = cust_stats.keys();
+		System.out.println("Oldest, youngest, highest and lowest name in one pass: " + custs.get(age_stats.argMax()).getName() + ", "
+		                   + custs.get(age_stats.argMin()).getName() + ", " + custs.get(name_stats.argMax()).getName() + ", "
+		                   + custs.get(name_stats.argMin()).getName());
 		
 	    //Convert string[] to ArrayList<String> while ALSO removing duplicates (known as stream chaining):
 	    String[] s = new String[] {"z","z","y","y","a","a","b","b","c","c"};
@@ -238,7 +261,15 @@ public class LambdasAndStreams {
 	    System.out.println("Shuffle an ArrayList<Integer> (randomize their indexes): " + make_me_random);
 	    //Note: This example is mostly for fun and to show one more example on how to convert from IntStream back to ArrayList.
 	    //      We didn't need to convert back and forth from a stream to an ArrayList, but the question asked for it so do so.
-	    
+
+	    //Do the same conversions, dedupe and shuffle WITHOUT boxing every element into an Integer (see IntList.java):
+	    IntList no_boxing = IntList.from(many_dupes).distinct();
+	    no_boxing.shuffle();
+	    int[] back_to_prim = no_boxing.stream().map(v -> v*2).toArray();
+	    System.out.println("Dedupe + shuffle an int[] using IntList, then multiply by 2: " + no_boxing + " " + Arrays.toString(back_to_prim));
+	    //Pitfalls: Every element of an ArrayList<Integer> is a separate Integer object.  For a handful of numbers that
+	    //          doesn't matter, but for millions of numbers use a primitive collection like IntList (or just an int[]).
+
 	    //Reverse an ArrayList<String>: 
 	    ArrayList<String> reverse_the_strings = new ArrayList<String>(List.of("Z","Y","X","B","A"));
 	    Collections.reverse(reverse_the_strings);
@@ -260,6 +291,15 @@ public class LambdasAndStreams {
 	    List<Customer> custs_over_30 = custs.stream().filter(per -> per.getAge() > 30).collect(Collectors.toList());
 	    System.out.println("Filter out all Customers with an age less than or equal to 30: ");
 	    custs_over_30.forEach(per -> System.out.print(per.getAge() + " "));
+
+	    //Same filter through ParallelRecipes (see ParallelRecipes.java), which runs it on its own ForkJoinPool.
+	    try (ParallelRecipes parallel = new ParallelRecipes()) {
+	    	ArrayList<Customer> par_over_30 = parallel.filter(custs, per -> per.getAge() > 30);
+	    	System.out.println("\n Same filter using ParallelRecipes: ");
+	    	par_over_30.forEach(per -> System.out.print(per.getAge() + " "));
+	    }
+	    //Pitfalls: Parallel is NOT automatically faster.  For a list this small ParallelRecipes stays sequential, because
+	    //          handing 21 Customers to other threads costs far more than just filtering them.  Measure first (bench/ScalingReport).
 	    
 	    //Filter to only keep all Customers with an @gmail email address:
 	    List<Customer> custs_with_gmail = custs.stream().filter(p -> p.getEmail() != null)
@@ -269,19 +309,72 @@ public class LambdasAndStreams {
 	    custs_with_gmail.forEach(c -> System.out.print(c.customerEmail != null ? c.customerEmail + " " : " NO EMAIL " ));
 	    //Pitfalls: Look for nulls.  There could be a null inside any stream or lambda statement, so you need to use 
 	    //          a ternary to deal with them.  Otherwise, you might get a null ref error during run time!
+
+	    //Printing a big result one System.out.print per element is slow.  A BatchedSink (see BatchedSink.java) formats
+	    //into one buffer and writes it in large chunks, and takes care of the null ternary with a placeholder:
+	    System.out.println("\n Same emails through a BatchedSink, then every customer's email with nulls as NO EMAIL: ");
+	    try (BatchedSink out = BatchedSink.toStdout().nullPlaceholder("NO EMAIL")) {
+	        custs_with_gmail.stream().map(Customer::getEmail).forEach(out);
+	        out.newLine();
+	        custs.stream().map(Customer::getEmail).forEach(out);
+	        out.newLine();
+	    } catch (IOException e) {
+	        throw new UncheckedIOException(e);
+	    }
+
+	    //If you ask by domain over and over, build an EmailDomainIndex once and look the ids up (see EmailDomainIndex.java):
+	    EmailDomainIndex domain_index = EmailDomainIndex.of(custs);
+	    int[] gmail_ids = domain_index.domain("gmail.com");
+	    System.out.println("\n Same customers from an EmailDomainIndex, ids " + Arrays.toString(gmail_ids) + ": ");
+	    Arrays.stream(gmail_ids).forEach(id -> System.out.print(custs.get(id).getEmail() + " "));
+	    //Pitfalls: contains("@gmail") also matches "@gmail.co.uk" and "@gmailer.net"; an index answers exactly the domain you ask for.
+
+	    //Which filter stage does the work?  Wrap each lambda in a named StreamProbe stage (see StreamProbe.java).
+	    //Probes only record when enabled (-Dstreamprobe.enabled=true); turned on here just to print the report.
+	    StreamProbe.setEnabled(true);
+	    StreamProbe gmail_probe = StreamProbe.of("custs_with_gmail");
+	    custs.stream().filter(gmail_probe.filter("has email", p -> p.getEmail() != null))
+	                  .filter(gmail_probe.filter("contains @gmail", p -> p.getEmail().toLowerCase().contains("@gmail")))
+	                  .collect(Collectors.toList());
+	    StreamProbe.setEnabled(false);
+	    System.out.print("\n Per stage counts for custs_with_gmail: " + gmail_probe.report());
+	    //Pitfalls: With probes disabled the wrapped lambdas ARE the original lambdas, so leaving the wrapping in costs nothing.
+
+	    //Enriching every customer from a slow service (here a pretend 5 ms geo lookup by phone prefix): map() would wait
+	    //5 ms per customer in turn.  An Enrichment (see Enrichment.java) keeps many lookups in flight at once:
+	    Enrichment<Customer,String> geo = Enrichment.of((Customer c) -> {
+	        try {
+	            Thread.sleep(5);
+	        } catch (InterruptedException e) {
+	            throw new IllegalStateException(e);
+	        }
+	        long phone = PhoneNumbers.parse(c.getPhone());
+	        if (phone < 0) {
+	            throw new IllegalArgumentException("no valid phone");
+	        }
+	        return String.valueOf(phone).startsWith("1614") ? "Columbus, OH" : "elsewhere";
+	    }).concurrency(32).timeout(500, TimeUnit.MILLISECONDS);
+	    System.out.println("\n Geo lookup for every customer, 32 at a time: ");
+	    try (Stream<Enrichment.Result<Customer,String>> located = geo.apply(custs.stream())) {
+	        located.forEach(r -> System.out.print(r.input().getName() + ": " + r.orElse("?") + "  "));
+	    }
+	    //Pitfalls: A failed or timed out lookup does not end the stream; its Result carries the error instead,
+	    //          so check isOk() (or use orElse) before trusting value().
 	    
 	    //Filter out all Customers with a last name lexicographically < 'm' (tricky, need to split the name string!)
-	    List<Customer> custs_less_than_m = custs.stream().filter(p -> (p.getName().toLowerCase().split(" ")[1] != null ? 
-	    												  p.getName().toLowerCase().split(" ")[1] : p.getName().toLowerCase().split(" ")[0])
-	    												 .compareTo("n") >= 0)
+	    List<Customer> custs_less_than_m = custs.stream().filter(p -> p.getParsedName().getLastFolded().compareTo("n") >= 0)
 	    												 .collect(Collectors.toList());
 	    System.out.println("\n Filters out all customers with a last name starting with < 'm': ");
-	    custs_less_than_m.forEach(c -> System.out.print((
-	    							   c.getName().split(" ")[1] != null ? 
-	    							   c.getName().split(" ")[1] : c.getName().split(" ")[0]) + " "));
-	    //Pitfalls: Since we can't be guaranteed that the string can be split on a space " ", we need to write a ternary
-	    //          and check for null under the split at position 1 (which would be the person's Last name).  If it's not 
-	    //          there then take the first name.  Also, check out the print statement.
+	    custs_less_than_m.forEach(c -> System.out.print(c.getParsedName().getLast() + " "));
+	    //Pitfalls: Since we can't be guaranteed that the name has a space in it, name.split(" ")[1] can throw an
+	    //          ArrayIndexOutOfBoundsException (it never returns null!).  Splitting also runs a regex and allocates
+	    //          a new String[] every time the lambda runs.  getParsedName() splits the name ONCE, by hand, falls back
+	    //          to the first name when there is no last name, and caches the result on the Customer.
+
+	    //Same filter using a sorted LastNameIndex (see LastNameIndex.java): a binary search instead of a full scan.
+	    LastNameIndex last_name_index = LastNameIndex.of(custs);
+	    System.out.println("\n Same filter using a LastNameIndex: ");
+	    last_name_index.atLeast("n").customers().forEach(c -> System.out.print(c.getParsedName().getLast() + " "));
 	    
 	    //Filter to find all Customers with an invalid phone number not containing exactly 10 digits: 
 	    ArrayList<Customer> noinvalidphonenumbers = custs.stream().filter(per -> per.customerPhone.length() == 10)
@@ -291,6 +384,14 @@ public class LambdasAndStreams {
 	    //Pitfalls: Filter statement takes in what you want to KEEP (a bit counter-intuitive, but that's how it is)
 	    //          Make sure to pass in a Predicate which describes what you would like to keep.
 	    
+	    //length() == 10 throws out "614-123-4567" and keeps "WeirdoCase".  Parse the digits instead (see PhoneNumbers.java):
+	    ArrayList<Customer> real_phone_numbers = custs.stream().filter(per -> PhoneNumbers.isValid(per.getPhone()))
+	    		                                      .collect(Collectors.toCollection(ArrayList::new));
+	    System.out.println("\n All customers with a real phone number, normalized: ");
+	    real_phone_numbers.forEach(per -> System.out.print(PhoneNumbers.format(PhoneNumbers.parse(per.getPhone())) + " "));
+	    System.out.println("\n \"" + custs.get(18).getPhone() + "\" is " + PhoneNumbers.classify(custs.get(18).getPhone())
+	                       + ", \"" + custs.get(5).getPhone() + "\" is " + PhoneNumbers.classify(custs.get(5).getPhone()));
+	    
 	    //Filter to find all customers with age less than 40 and having a @gmail.com email address:
 	    ArrayList<Customer> less40_and_gmail = custs.stream().filter(per -> per.getEmail() != null)
 	    													 .filter(per -> per.getAge() < 40 && 
@@ -301,7 +402,29 @@ public class LambdasAndStreams {
 	    //Pitfalls: You CAN chain filters here, or you can just use a Predicate which describes both. 
 	    //          Either way will work but it is best to chain less filters or stream statements when possible.
 	    //          Also, make sure to check for nulls first before doing the 2'nd filter.
-	    
+
+	    //Same query as ONE compiled, null-safe predicate whose terms get reordered by what they cost (see CustomerQuery.java):
+	    CustomerQuery less40_gmail_query = CustomerQuery.compile(CustomerQuery.and(CustomerQuery.contains(CustomerQuery.Field.EMAIL, "@gmail"),
+	                                                                                 CustomerQuery.range(CustomerQuery.Field.AGE, Integer.MIN_VALUE, 40)));
+	    System.out.println("\n Same query with a CustomerQuery " + less40_gmail_query + ": ");
+	    less40_gmail_query.filter(custs).forEach(c -> System.out.print(c.getAge() + " " + c.getEmail() + " "));
+	    //Pitfalls: Compile the query once and keep it.  A freshly compiled query starts from a guess of the best order.
+
+	    //Same query against a columnar CustomerStore (see CustomerStore.java): each predicate returns a BitSet of rows.
+	    CustomerStore cust_store = CustomerStore.of(custs);
+	    BitSet rows = cust_store.ageLessThan(40);
+	    rows.and(cust_store.emailDomainMatches(d -> d.startsWith("gmail")));
+	    System.out.println("\n Same query on a CustomerStore, rows " + rows + ": ");
+	    cust_store.select(rows).forEach(c -> System.out.print(c.getAge() + " " + c.getEmail() + " "));
+	    //Pitfalls: The BitSet is just row numbers.  Only call select() at the very end, when you actually need the Customers.
+
+	    //Instead of one filter per domain, break ALL customers down by email domain in one pass (see CustomerGroups.java):
+	    HashMap<String,Aggregates.IntStats> by_domain = CustomerGroups.groupBy(custs, CustomerGroups.EMAIL_DOMAIN, Customer::getAge);
+	    System.out.println("\n Customers and average age per email domain: ");
+	    by_domain.forEach((d, st) -> System.out.print((d != null ? d : "NO EMAIL") + "=" + st.count() + "/" + st.average() + " "));
+	    //Pitfalls: Collectors.groupingBy throws a NullPointerException for a null key, so customers without an
+	    //          email need a placeholder key there.  CustomerGroups keeps them under the null key instead.
+
 	    //Use a forEach with a lambda to print every element of an ArrayList<Object>:
 	    ArrayList<Object> tons_of_obj = new ArrayList<Object>(List.of(5,4,3,6,5,7,8,"exampleabnormality",6,4,10,3,2,3,4,5,6,5,2));
 	    System.out.println("\n Print tons of objects: ");
@@ -329,6 +452,27 @@ public class LambdasAndStreams {
 	    custs.forEach(c -> System.out.print(c.getName() + " " + c.getAge() + " "));
 	    //Pitfalls: Again, make sure to use a ternary statement that does a null check.  
 	    //          Otherwise you are asking for a null ref error!  Give a default for the null case. 
+
+	    //Stream Customers straight out of a CSV file and filter them as they are read (see CustomerFeed.java):
+	    try {
+	    	Path custs_csv = Files.createTempFile("customers", ".csv");
+	    	try {
+	    		CustomerFeed.writeCsv(custs_csv, custs);
+	    		try (Stream<Customer> from_file = CustomerFeed.stream(custs_csv)) {
+	    			System.out.println("\n Customers read from a CSV file with a 10 character phone and an @gmail email: ");
+	    			from_file.filter(per -> per.getPhone().length() == 10)
+	    			         .filter(per -> per.getEmail() != null && per.getEmail().toLowerCase().contains("@gmail"))
+	    			         .forEach(c -> System.out.print(c.getName() + " "));
+	    			System.out.println();
+	    		}
+	    	} finally {
+	    		Files.delete(custs_csv);
+	    	}
+	    } catch (IOException e) {
+	    	throw new UncheckedIOException(e);
+	    }
+	    //Pitfalls: A Stream that reads a file holds it open until the stream is closed, so always use try-with-resources.
+	    //          Don't collect() it into a List first: the whole point is that only one Customer is in memory at a time.
 	    
 		/* ------------------ END OF ARRAYS SECTION OF LAMBDAS STREAMS AND TERNARYS ------------------
 		Key Takeaways:
@@ -377,30 +521,40 @@ public class LambdasAndStreams {
 	    System.out.println("Maximum String key in Hashtable: " + largest_key);
 		
 		//Find the ENTRY in a HashMap<String,Integer> based on highest VALUE:
-		Entry<String,Integer> highest_val_entry = hm1.entrySet().stream().max((v,k) -> v.getValue() > k.getValue() ?
-				                                                              1 : -1).get(); 
+		Entry<String,Integer> highest_val_entry = hm1.entrySet().stream().max(Entry.comparingByValue()).get(); 
 		System.out.println("Find the largest ENTRY in a HashMap<String,Integer> based on VALUE: " +
 				highest_val_entry.getKey() + " " + highest_val_entry.getValue()); 
 		
 		//Find the largest ENTRY in a HashMap<String,Integer> based on highest alphanumeric KEY:
-		Entry<String,Integer> highest_key_entry = hm1.entrySet().stream().max((v,k) -> (v.getKey()).compareTo(k.getKey()) > 0 ? 
-				                                                          1 : -1).get();
+		Entry<String,Integer> highest_key_entry = hm1.entrySet().stream().max(Entry.comparingByKey()).get();
 		System.out.println("Find the largest ENTRY in a HashMap<String,Integer> based on KEY: " 
 				            + highest_key_entry.getKey() + " " + highest_key_entry.getValue());
 		
 		//Find the KEY in a HashMap<String,Integer> associated with the lowest VALUE:
-		String key_of_lowest_val = hm1.entrySet().stream().min((v,k) -> v.getValue() - k.getValue()).get().getKey();
+		String key_of_lowest_val = hm1.entrySet().stream().min(Entry.comparingByValue()).get().getKey();
 		System.out.println("Find the KEY in a HashMap<String,Integer> associated with the lowest VALUE: " + key_of_lowest_val);
 		
 		//Find the VALUE in a HashMap<String,Integer> associated with the lowest KEY:
-		Integer val_of_lowest_key = hm1.entrySet().stream().min((v,k) -> (v.getKey()).compareTo(k.getKey()) < 0 ? 1 : -1)
-				                                            .get().getValue();
-		System.out.println("Find the VALUE in a HashMap<String,Integer> associated with the highest KEY: " + val_of_lowest_key);
+		Integer val_of_lowest_key = hm1.entrySet().stream().min(Entry.comparingByKey()).get().getValue();
+		System.out.println("Find the VALUE in a HashMap<String,Integer> associated with the lowest KEY: " + val_of_lowest_key);
 		
 		//Find the KEY in a HashMap<String,Integer> associated with the highest VALUE:		
-		String key_of_highest_val = hm1.entrySet().stream().max((v,k) -> v.getValue() - k.getValue())
-				                       .get().getKey();
+		String key_of_highest_val = hm1.entrySet().stream().max(Entry.comparingByValue()).get().getKey();
 		System.out.println("Find the KEY in a HashMap<String,Integer> associated with the highest VALUE: " + key_of_highest_val);
+		//Pitfalls: A Comparator MUST return 0 for equal elements.  (v,k) -> v.getValue() > k.getValue() ? 1 : -1 never does,
+		//          so ties come out in a random order.  (v,k) -> v.getValue() - k.getValue() looks fine but overflows for
+		//          large positive/negative values and then gets the order backwards.  Use Entry.comparingByValue(),
+		//          Entry.comparingByKey() or Integer.compare(x, y) instead of writing the ternary yourself.
+
+		//Find the top 3 ENTRIES by VALUE without sorting the whole map (see EntryRanking.java):
+		List<Entry<String,Integer>> top3 = EntryRanking.topByValue(hm1, 3);
+		System.out.println("Find the top 3 ENTRIES in a HashMap<String,Integer> by VALUE: " + top3);
+
+		//When the map keeps changing and you keep asking for the max, keep it ranked as you go with a RankedMap:
+		RankedMap<String> leaderboard = new RankedMap<String>(hm1);
+		leaderboard.put("U", 10);
+		leaderboard.remove("V");
+		System.out.println("Highest and lowest ENTRY of a RankedMap after put/remove: " + leaderboard.max() + " " + leaderboard.min());
 		
 		//Find all Customers in the table CustomersTable where their index (integer) is less than 10:
 	    HashMap<Integer, Customer> cust_table = createCustomersTable();
@@ -411,13 +565,37 @@ public class LambdasAndStreams {
 		
 		//Find all indexes (integer) where Customer last name began with an 's':
 		HashMap<Integer,Customer> lastname_s = cust_table.entrySet().stream().filter(
-				                                          cust -> cust.getValue().getName().split(" ")[1] != null ?
-				                                        		  cust.getValue().getName().split(" ")[1].startsWith("s") : 
-				                                        	      cust.getValue().getName().split(" ")[0].startsWith("s"))
+				                                          cust -> cust.getValue().getParsedName().getLastFolded().startsWith("s"))
 				                                          .collect(Collectors.toMap(Map.Entry::getKey,Map.Entry::getValue,
 				                                        		                   (v,k) -> v, HashMap::new));
 		System.out.println("\nFind all indexes where Customer last name began with an 's': ");
 		lastname_s.entrySet().forEach(c -> System.out.print(c.getKey() + " " + c.getValue().getName()));
+		//Or ask a LastNameIndex built over the table for the keys directly:
+		System.out.println("\nSame indexes from a LastNameIndex: " + Arrays.toString(LastNameIndex.of(cust_table).withPrefix("s").ids().toArray()));
+		//How many customers in the table per last name initial, and per 10 year age band:
+		System.out.println("Customers per last name initial: " + CustomerGroups.count(cust_table.values(), CustomerGroups.LAST_INITIAL));
+		System.out.println("Customers per age band: " + CustomerGroups.count(cust_table.values(), CustomerGroups.ageBand(10)));
+
+		//When other threads keep writing to the table, query a point-in-time snapshot of a LiveCustomerTable instead
+		//(see LiveCustomerTable.java).  Writes after the snapshot was taken don't show up in it, and don't wait for it.
+		LiveCustomerTable live_table = LiveCustomerTable.of(cust_table);
+		LiveCustomerTable.Snapshot before = live_table.snapshot();
+		live_table.batch().put(0, new Customer("Zed Zimmerman","5551234567",30,"zed@gmail.com")).remove(1).commit();
+		System.out.println("Snapshot index < 3 before and after a batch: " + before.range(0, 3).keySet() + " "
+		                   + live_table.snapshot().range(0, 3).keySet() + " (" + live_table.get(0).getName() + ")");
+		//Pitfalls: Streaming over a plain HashMap while another thread writes to it can throw ConcurrentModificationException,
+		//          and wrapping it in Collections.synchronizedMap/Hashtable makes every reader wait on every writer.
+
+		//Asking the same question over and over?  Keep the answer as a view that follows the table (see CustomerView.java):
+		CustomerView.Filter over_30_view = CustomerView.filter(live_table, c -> c.getAge() > 30);
+		CustomerView.Stats age_view = CustomerView.stats(live_table, c -> true, Customer::getAge);
+		over_30_view.subscribe((view, key, left, entered) -> System.out.println("  over_30_view: " + (entered != null ? "+" + entered.getName() : "-" + left.getName())));
+		System.out.println("Customers over 30 in the table: " + over_30_view.size() + ", ages " + age_view);
+		live_table.put(100, new Customer("Olive Oldham","6145550100",91,null));
+		live_table.remove(100);
+		System.out.println("After adding and removing one: " + over_30_view.size() + ", ages " + age_view);
+		//Pitfalls: Subscribers run on whichever writer's thread is delivering changes at the time, not necessarily the one that
+		//          made the change, and that writer waits for them.  Hand slow work off to another thread.
 		
 		/* ----------- END OF HASHTABLE AND HASHMAP SECTION OF LAMBDAS STREAMS AND TERNARYS -------------
 		-----------------------------------------------------------------------------------------------*/
@@ -481,6 +659,7 @@ public class LambdasAndStreams {
 		private final String customerPhone;
 		private final String customerEmail;
 		private final int customerAge;
+		private ParsedName parsedName; //Computed on first use, see getParsedName()
 		
 		public Customer(String name, String phone, int age, String email) {
 			this.customerAge = age;
@@ -504,5 +683,59 @@ public class LambdasAndStreams {
 		public String getPhone() {
 			return this.customerPhone;
 		}
+
+		//First/last name split once and cached.  Two threads racing here just both compute the same immutable value.
+		public ParsedName getParsedName() {
+			ParsedName p = this.parsedName;
+			if (p == null) {
+				p = new ParsedName(this.customerName);
+				this.parsedName = p;
+			}
+			return p;
+		}
+	}
+
+	//A Customer's name split on whitespace without a regex: "Amelia-Grace Devila" -> first "Amelia-Grace", last "Devila".
+	//The last name is the LAST word ("George W Bush" -> "Bush").  A one word name uses that word as both first and last.
+	static final class ParsedName {
+		private final String first;
+		private final String last;
+		private final String lastFolded;
+
+		ParsedName(String name) {
+			String n = name == null ? "" : name;
+			int start = 0;
+			int end = n.length();
+			while (start < end && Character.isWhitespace(n.charAt(start))) {
+				start++;
+			}
+			while (end > start && Character.isWhitespace(n.charAt(end - 1))) {
+				end--;
+			}
+			int firstEnd = start;
+			while (firstEnd < end && !Character.isWhitespace(n.charAt(firstEnd))) {
+				firstEnd++;
+			}
+			int lastStart = end;
+			while (lastStart > start && !Character.isWhitespace(n.charAt(lastStart - 1))) {
+				lastStart--;
+			}
+			this.first = n.substring(start, firstEnd);
+			this.last = n.substring(lastStart, end);
+			this.lastFolded = this.last.toLowerCase();
+		}
+
+		public String getFirst() {
+			return this.first;
+		}
+
+		public String getLast() {
+			return this.last;
+		}
+
+		//Lowercase last name, for case-insensitive sorting and comparisons
+		public String getLastFolded() {
+			return this.lastFolded;
+		}
 	}
 }
@@ -0,0 +1,136 @@
+/*
+  LastNameIndex: Customers sorted once by lowercase last name, so last name range and prefix filters
+  become two binary searches instead of a full scan that splits every name.
+
+  Built from a List<Customer> (the id of a customer is its position in the list) or from a
+  Map<Integer,Customer> like cust_table (the id is the map key).  Every query returns a Slice, which is
+  only a [from, to) window over the sorted arrays: nothing is copied until you ask for it.  */
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.stream.IntStream;
+
+public class LastNameIndex {
+	private final String[] keys;  //lowercase last names, sorted
+	private final int[] ids;
+	private final LambdasAndStreams.Customer[] custs;
+
+	private LastNameIndex(int[] ids, LambdasAndStreams.Customer[] custs) {
+		int n = custs.length;
+		Integer[] order = new Integer[n];
+		for (int i = 0; i < n; i++) {
+			order[i] = i;
+		}
+		//One time cost at build.  Ties on last name keep their original (id) order.
+		Arrays.sort(order, Comparator.comparing((Integer i) -> custs[i].getParsedName().getLastFolded()));
+		this.keys = new String[n];
+		this.ids = new int[n];
+		this.custs = new LambdasAndStreams.Customer[n];
+		for (int i = 0; i < n; i++) {
+			this.keys[i] = custs[order[i]].getParsedName().getLastFolded();
+			this.ids[i] = ids[order[i]];
+			this.custs[i] = custs[order[i]];
+		}
+	}
+
+	public static LastNameIndex of(List<LambdasAndStreams.Customer> custs) {
+		return new LastNameIndex(IntStream.range(0, custs.size()).toArray(), custs.toArray(new LambdasAndStreams.Customer[0]));
+	}
+
+	public static LastNameIndex of(Map<Integer,LambdasAndStreams.Customer> table) {
+		int[] ids = new int[table.size()];
+		LambdasAndStreams.Customer[] custs = new LambdasAndStreams.Customer[table.size()];
+		int i = 0;
+		for (Entry<Integer,LambdasAndStreams.Customer> e : table.entrySet()) {
+			ids[i] = e.getKey();
+			custs[i++] = e.getValue();
+		}
+		return new LastNameIndex(ids, custs);
+	}
+
+	public int size() {
+		return keys.length;
+	}
+
+	//Last names starting with prefix, ignoring case: withPrefix("s")
+	public Slice withPrefix(String prefix) {
+		String p = prefix.toLowerCase();
+		int from = lowerBound(p);
+		int to = from;
+		while (to < keys.length && keys[to].startsWith(p)) {
+			to++;
+		}
+		return new Slice(from, to);
+	}
+
+	//Last names >= from and < to, ignoring case.  Either end may be null for "no limit".
+	public Slice range(String from, String to) {
+		int lo = from == null ? 0 : lowerBound(from.toLowerCase());
+		int hi = to == null ? keys.length : lowerBound(to.toLowerCase());
+		return new Slice(lo, Math.max(lo, hi));
+	}
+
+	//Replaces the custs_less_than_m recipe: atLeast("n")
+	public Slice atLeast(String from) {
+		return range(from, null);
+	}
+
+	public Slice lessThan(String to) {
+		return range(null, to);
+	}
+
+	//First position whose key is >= key
+	private int lowerBound(String key) {
+		int lo = 0, hi = keys.length;
+		while (lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			if (keys[mid].compareTo(key) < 0) {
+				lo = mid + 1;
+			} else {
+				hi = mid;
+			}
+		}
+		return lo;
+	}
+
+	//A window [from, to) of the index, in last name order.
+	public final class Slice {
+		private final int from;
+		private final int to;
+
+		private Slice(int from, int to) {
+			this.from = from;
+			this.to = to;
+		}
+
+		public int size() {
+			return to - from;
+		}
+
+		//The customer ids (list positions or table keys) in last name order
+		public IntStream ids() {
+			return Arrays.stream(ids, from, to);
+		}
+
+		//Read-only view, nothing is copied
+		public List<LambdasAndStreams.Customer> customers() {
+			return new AbstractList<LambdasAndStreams.Customer>() {
+				@Override
+				public LambdasAndStreams.Customer get(int index) {
+					if (index < 0 || index >= to - from) {
+						throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + (to - from));
+					}
+					return custs[from + index];
+				}
+
+				@Override
+				public int size() {
+					return to - from;
+				}
+			};
+		}
+	}
+}
@@ -0,0 +1,650 @@
+/*
+  LiveCustomerTable: A customer table (id -> Customer, like cust_table) that writers can keep upserting
+  while many readers query it.
+
+  Hashtable and Collections.synchronizedMap put ONE lock around everything: every get() waits for every
+  put(), and streaming over the map while someone writes throws ConcurrentModificationException (or needs
+  the lock held for the whole query).  Here:
+  - The table is split into stripes by key hash.  Each stripe is an immutable pair of sorted arrays
+    (keys, Customers), and all stripes hang off one immutable Root.
+  - Reads never lock: get() reads the current Root and binary searches one stripe.
+  - A write locks only its own stripe, builds a new copy of that stripe, then swaps in a new Root with a
+    compareAndSet.  Writers on different stripes copy in parallel and only race on the (tiny) Root swap.
+  - A Batch commits all its puts and removes with ONE Root swap, so nobody ever sees half of it.
+  - snapshot() is just the current Root: a point-in-time view that can be streamed, range-queried or
+    indexed for as long as you like.  It never blocks writers and writers never change it.
+
+  What a write costs: a single put()/remove() allocates a new stripe (size / stripes keys and Customers) AND
+  a new Root array (stripes slots), and every writer in the JVM then lines up on the one Root CAS.  That
+  is O(size / stripes + stripes) garbage per write, smallest when stripes is about sqrt(size): of() sizes
+  the table that way (256 stripes up to 64K rows, 4096 at 16M rows, ...), the plain constructor does not.
+  At tens of millions of rows that is still tens of KB per single-row write, so write rates there are in the
+  tens of thousands per second, not millions (bench/LiveTableStress prints the numbers for this machine).
+  For bulk or high-rate updates use a Batch: one Root swap and one merge per touched stripe per commit.
+  Customers can't be null.
+
+  ChangeListeners (see CustomerView) hear about every change, key by key, in the order the changes were
+  made.  A write only queues its changes (while its stripe is locked, which is what fixes the order) and
+  delivers them AFTER unlocking: whichever writer finds nobody else delivering runs the listeners for
+  everything queued, its own changes and other writers' alike, on its own thread, one change at a time.
+  So a listener runs on some writer's thread, not necessarily the writer that made the change, and a slow
+  listener delays other listeners and that one delivering writer, never the stripe locks (changes wait in an
+  unbounded queue meanwhile, so a listener must keep up on average).  A change has been delivered by the
+  time put()/remove()/commit() returns only if no other thread was delivering then (always the case with
+  one writer); otherwise the thread that is delivering gets to it shortly after.  A listener that throws a
+  RuntimeException is reported to the thread's UncaughtExceptionHandler and skipped: the write stands and
+  the other listeners still hear about it.  An Error is not caught: it comes out of the write that was
+  delivering (which still stands), and the changes left in the queue go out with the next write.  */
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+public class LiveCustomerTable {
+	static final int DEFAULT_STRIPES = 256;
+	static final int MAX_STRIPES = 1 << 16;
+
+	private static final int[] NO_KEYS = new int[0];
+	private static final LambdasAndStreams.Customer[] NO_CUSTOMERS = new LambdasAndStreams.Customer[0];
+	private static final Stripe EMPTY = new Stripe(NO_KEYS, NO_CUSTOMERS);
+
+	private final AtomicReference<Root> root;
+	private final ReentrantLock[] locks;
+	private final int mask;
+	private final CopyOnWriteArrayList<ChangeListener> listeners = new CopyOnWriteArrayList<ChangeListener>();
+	//Listeners added or about to be; writers only queue changes when there is one.  Changed under every stripe lock.
+	private final AtomicInteger subscribed = new AtomicInteger();
+	private final ConcurrentLinkedQueue<Event> events = new ConcurrentLinkedQueue<Event>();
+	//Number of deliver() calls that found work; only the one that brought it up from 0 delivers
+	private final AtomicInteger delivering = new AtomicInteger();
+
+	//before is null for an insert, after is null for a remove
+	public interface ChangeListener {
+		void changed(int key, LambdasAndStreams.Customer before, LambdasAndStreams.Customer after);
+	}
+
+	public LiveCustomerTable() {
+		this(DEFAULT_STRIPES);
+	}
+
+	public LiveCustomerTable(int stripes) {
+		if (stripes < 1 || Integer.bitCount(stripes) != 1) {
+			throw new IllegalArgumentException("stripes must be a power of two: " + stripes);
+		}
+		Stripe[] empty = new Stripe[stripes];
+		Arrays.fill(empty, EMPTY);
+		this.root = new AtomicReference<Root>(new Root(empty, 0, 0));
+		this.locks = new ReentrantLock[stripes];
+		for (int i = 0; i < stripes; i++) {
+			locks[i] = new ReentrantLock();
+		}
+		this.mask = stripes - 1;
+	}
+
+	//Loads a table like cust_table in one batch, with stripesFor(its size) stripes
+	public static LiveCustomerTable of(Map<Integer,LambdasAndStreams.Customer> table) {
+		LiveCustomerTable live = new LiveCustomerTable(stripesFor(table.size()));
+		Batch batch = live.batch();
+		table.forEach(batch::put);
+		batch.commit();
+		return live;
+	}
+
+	//The power of two nearest above sqrt(rows), between DEFAULT_STRIPES and MAX_STRIPES: a write then copies
+	//about as many stripe entries as Root slots, which is the least it can copy in total
+	static int stripesFor(int rows) {
+		int root = (int) Math.ceil(Math.sqrt(Math.max(rows, 1)));
+		int stripes = Integer.highestOneBit(root);
+		if (stripes < root) {
+			stripes <<= 1;
+		}
+		return Math.max(DEFAULT_STRIPES, Math.min(MAX_STRIPES, stripes));
+	}
+
+	public int stripes() {
+		return mask + 1;
+	}
+
+	//----------------------------- Reads (never lock) -----------------------------
+
+	public LambdasAndStreams.Customer get(int key) {
+		return root.get().stripes[stripeOf(key)].get(key);
+	}
+
+	public boolean containsKey(int key) {
+		return get(key) != null;
+	}
+
+	public int size() {
+		return root.get().size;
+	}
+
+	//Bumped by every write and every committed batch
+	public long version() {
+		return root.get().version;
+	}
+
+	public Snapshot snapshot() {
+		return new Snapshot(root.get());
+	}
+
+	//----------------------------- Writes (lock one stripe) -----------------------------
+
+	//Inserts or replaces.  Returns the previous Customer for the key, or null.
+	public LambdasAndStreams.Customer put(int key, LambdasAndStreams.Customer customer) {
+		Objects.requireNonNull(customer, "customer");
+		int s = stripeOf(key);
+		locks[s].lock();
+		try {
+			Stripe old = root.get().stripes[s];
+			LambdasAndStreams.Customer previous = old.get(key);
+			if (previous != customer) {
+				install(new int[] {s}, new Stripe[] {old.with(key, customer)});
+				queueChange(key, previous, customer);
+			}
+			return previous;
+		} finally {
+			locks[s].unlock();
+			deliver();
+		}
+	}
+
+	//Returns the removed Customer, or null if the key wasn't there
+	public LambdasAndStreams.Customer remove(int key) {
+		int s = stripeOf(key);
+		locks[s].lock();
+		try {
+			Stripe old = root.get().stripes[s];
+			LambdasAndStreams.Customer previous = old.get(key);
+			if (previous != null) {
+				install(new int[] {s}, new Stripe[] {old.without(key)});
+				queueChange(key, previous, null);
+			}
+			return previous;
+		} finally {
+			locks[s].unlock();
+			deliver();
+		}
+	}
+
+	public Batch batch() {
+		return new Batch();
+	}
+
+	//With replayExisting, the listener first gets an insert for every Customer already in the table.  The
+	//stripes are all locked just long enough to take a snapshot and queue the listener behind every change
+	//made before it, so the listener sees each change exactly once: in the replay or as a change afterwards.
+	//The replay itself runs on the delivering thread, outside the locks.
+	public void addListener(ChangeListener listener, boolean replayExisting) {
+		Objects.requireNonNull(listener, "listener");
+		for (ReentrantLock lock : locks) {
+			lock.lock();
+		}
+		try {
+			subscribed.incrementAndGet();
+			events.add(new Subscribe(listener, replayExisting ? root.get() : null));
+		} finally {
+			for (ReentrantLock lock : locks) {
+				lock.unlock();
+			}
+		}
+		deliver();
+	}
+
+	//The listener hears about every change queued before this call and nothing after
+	public void removeListener(ChangeListener listener) {
+		events.add(new Unsubscribe(listener));
+		deliver();
+	}
+
+	//Called with the key's stripe locked, so changes to one key are queued in the order they were made
+	private void queueChange(int key, LambdasAndStreams.Customer before, LambdasAndStreams.Customer after) {
+		if (subscribed.get() > 0) {
+			events.add(new Change(key, before, after));
+		}
+	}
+
+	//Runs the queued events unless another thread already is; that thread then picks up ours as well
+	private void deliver() {
+		if (events.isEmpty() || delivering.getAndIncrement() != 0) {
+			return;
+		}
+		int missed = 1;
+		try {
+			do {
+				Event e;
+				while ((e = events.poll()) != null) {
+					e.deliver();
+				}
+				missed = delivering.addAndGet(-missed);
+			} while (missed != 0);
+		} finally {
+			if (missed != 0) { //A listener's Error: let the next write deliver the rest
+				delivering.set(0);
+			}
+		}
+	}
+
+	private static void tell(ChangeListener l, int key, LambdasAndStreams.Customer before, LambdasAndStreams.Customer after) {
+		try {
+			l.changed(key, before, after);
+		} catch (RuntimeException e) {
+			Thread t = Thread.currentThread();
+			t.getUncaughtExceptionHandler().uncaughtException(t, e);
+		}
+	}
+
+	private abstract static class Event {
+		abstract void deliver();
+	}
+
+	private final class Change extends Event {
+		private final int key;
+		private final LambdasAndStreams.Customer before;
+		private final LambdasAndStreams.Customer after;
+
+		Change(int key, LambdasAndStreams.Customer before, LambdasAndStreams.Customer after) {
+			this.key = key;
+			this.before = before;
+			this.after = after;
+		}
+
+		@Override
+		void deliver() {
+			for (ChangeListener l : listeners) {
+				tell(l, key, before, after);
+			}
+		}
+	}
+
+	private final class Subscribe extends Event {
+		private final ChangeListener listener;
+		private final Root replay;
+
+		Subscribe(ChangeListener listener, Root replay) {
+			this.listener = listener;
+			this.replay = replay;
+		}
+
+		@Override
+		void deliver() {
+			if (replay != null) {
+				for (Stripe s : replay.stripes) {
+					for (int i = 0; i < s.keys.length; i++) {
+						tell(listener, s.keys[i], null, s.values[i]);
+					}
+				}
+			}
+			listeners.add(listener);
+		}
+	}
+
+	private final class Unsubscribe extends Event {
+		private final ChangeListener listener;
+
+		Unsubscribe(ChangeListener listener) {
+			this.listener = listener;
+		}
+
+		@Override
+		void deliver() {
+			if (listeners.remove(listener)) {
+				subscribed.decrementAndGet();
+			}
+		}
+	}
+
+	//Swaps in a Root with the given stripes replaced.  The caller holds those stripes' locks, so nobody
+	//else can replace them in between and the CAS only ever retries because of OTHER stripes' writes.
+	private void install(int[] stripeIndexes, Stripe[] replacements) {
+		while (true) {
+			Root current = root.get();
+			Stripe[] next = current.stripes.clone();
+			int size = current.size;
+			for (int i = 0; i < stripeIndexes.length; i++) {
+				size += replacements[i].keys.length - next[stripeIndexes[i]].keys.length;
+				next[stripeIndexes[i]] = replacements[i];
+			}
+			if (root.compareAndSet(current, new Root(next, size, current.version + 1))) {
+				return;
+			}
+		}
+	}
+
+	private int stripeOf(int key) {
+		int h = key * 0x9E3779B9;
+		return (h ^ (h >>> 16)) & mask;
+	}
+
+	//Puts and removes that become visible all at once on commit().  Later operations on the same key win.
+	public final class Batch {
+		private final LinkedHashMap<Integer,LambdasAndStreams.Customer> ops = new LinkedHashMap<Integer,LambdasAndStreams.Customer>();
+
+		private Batch() {
+		}
+
+		public Batch put(int key, LambdasAndStreams.Customer customer) {
+			ops.put(key, Objects.requireNonNull(customer, "customer"));
+			return this;
+		}
+
+		public Batch remove(int key) {
+			ops.put(key, null);
+			return this;
+		}
+
+		public int size() {
+			return ops.size();
+		}
+
+		//Applies everything with one Root swap.  Stripe locks are taken in index order so two batches can't deadlock.
+		public void commit() {
+			if (ops.isEmpty()) {
+				return;
+			}
+			int stripes = mask + 1;
+			int[] counts = new int[stripes];
+			for (Integer key : ops.keySet()) {
+				counts[stripeOf(key)]++;
+			}
+			int touched = 0;
+			for (int c : counts) {
+				if (c > 0) {
+					touched++;
+				}
+			}
+			int[] indexes = new int[touched];
+			int[][] keys = new int[stripes][];
+			LambdasAndStreams.Customer[][] values = new LambdasAndStreams.Customer[stripes][];
+			for (int s = 0, t = 0; s < stripes; s++) {
+				if (counts[s] > 0) {
+					indexes[t++] = s;
+					keys[s] = new int[counts[s]];
+					values[s] = new LambdasAndStreams.Customer[counts[s]];
+					counts[s] = 0;
+				}
+			}
+			for (Map.Entry<Integer,LambdasAndStreams.Customer> op : ops.entrySet()) {
+				int s = stripeOf(op.getKey());
+				keys[s][counts[s]] = op.getKey();
+				values[s][counts[s]++] = op.getValue();
+			}
+			for (int s : indexes) {
+				locks[s].lock();
+			}
+			try {
+				Root current = root.get();
+				Stripe[] replacements = new Stripe[touched];
+				for (int t = 0; t < touched; t++) {
+					int s = indexes[t];
+					replacements[t] = current.stripes[s].merge(keys[s], values[s]);
+				}
+				install(indexes, replacements);
+				if (subscribed.get() > 0) {
+					for (Map.Entry<Integer,LambdasAndStreams.Customer> op : ops.entrySet()) {
+						LambdasAndStreams.Customer before = current.stripes[stripeOf(op.getKey())].get(op.getKey());
+						if (before != op.getValue()) {
+							queueChange(op.getKey(), before, op.getValue());
+						}
+					}
+				}
+			} finally {
+				for (int s : indexes) {
+					locks[s].unlock();
+				}
+				deliver();
+			}
+			ops.clear();
+		}
+	}
+
+	//----------------------------- Snapshots -----------------------------
+
+	//The whole table as of one moment.  Cheap to take, immutable, safe to share between threads.
+	public static final class Snapshot {
+		private final Root root;
+		private LastNameIndex lastNames;
+
+		private Snapshot(Root root) {
+			this.root = root;
+		}
+
+		public long version() {
+			return root.version;
+		}
+
+		public int size() {
+			return root.size;
+		}
+
+		public LambdasAndStreams.Customer get(int key) {
+			Stripe[] stripes = root.stripes;
+			int h = key * 0x9E3779B9;
+			return stripes[(h ^ (h >>> 16)) & (stripes.length - 1)].get(key);
+		}
+
+		public boolean containsKey(int key) {
+			return get(key) != null;
+		}
+
+		//Every Customer, in no particular order
+		public Stream<LambdasAndStreams.Customer> stream() {
+			return Arrays.stream(root.stripes).flatMap(s -> Arrays.stream(s.values));
+		}
+
+		//All keys, least to greatest
+		public int[] keys() {
+			return range(Integer.MIN_VALUE, Integer.MAX_VALUE, true).keys;
+		}
+
+		//Keys in [from, to), in key order.  Same result as the tutorial's filter(c -> c.getKey() < 10) with from = 0.
+		public LinkedHashMap<Integer,LambdasAndStreams.Customer> range(int from, int to) {
+			Entries e = range(from, to, false);
+			LinkedHashMap<Integer,LambdasAndStreams.Customer> out = new LinkedHashMap<Integer,LambdasAndStreams.Customer>(e.keys.length * 2);
+			for (int i = 0; i < e.keys.length; i++) {
+				out.put(e.keys[i], e.values[i]);
+			}
+			return out;
+		}
+
+		//Every Customer in key order, for CustomerGroups and friends
+		public List<LambdasAndStreams.Customer> customers() {
+			Entries e = range(Integer.MIN_VALUE, Integer.MAX_VALUE, true);
+			return new AbstractList<LambdasAndStreams.Customer>() {
+				@Override
+				public LambdasAndStreams.Customer get(int index) {
+					return e.values[index];
+				}
+
+				@Override
+				public int size() {
+					return e.keys.length;
+				}
+			};
+		}
+
+		public HashMap<Integer,LambdasAndStreams.Customer> toMap() {
+			HashMap<Integer,LambdasAndStreams.Customer> out = new HashMap<Integer,LambdasAndStreams.Customer>(root.size * 2);
+			for (Stripe s : root.stripes) {
+				for (int i = 0; i < s.keys.length; i++) {
+					out.put(s.keys[i], s.values[i]);
+				}
+			}
+			return out;
+		}
+
+		//Last name queries over this snapshot.  Built on first use, then reused.
+		public synchronized LastNameIndex lastNameIndex() {
+			if (lastNames == null) {
+				lastNames = LastNameIndex.of(toMap());
+			}
+			return lastNames;
+		}
+
+		//Each stripe is sorted, so the matching part of a stripe is found by binary search.  The parts are then
+		//put in key order by sorting (key, position) packed into longs.  to is exclusive unless inclusive is set.
+		private Entries range(int from, int to, boolean inclusive) {
+			Stripe[] stripes = root.stripes;
+			int[] starts = new int[stripes.length];
+			int[] ends = new int[stripes.length];
+			int n = 0;
+			for (int s = 0; s < stripes.length; s++) {
+				int[] keys = stripes[s].keys;
+				starts[s] = lowerBound(keys, from);
+				ends[s] = inclusive && to == Integer.MAX_VALUE ? keys.length : lowerBound(keys, inclusive ? to + 1 : to);
+				n += Math.max(0, ends[s] - starts[s]);
+			}
+			int[] keys = new int[n];
+			LambdasAndStreams.Customer[] values = new LambdasAndStreams.Customer[n];
+			long[] packed = new long[n];
+			int j = 0;
+			for (int s = 0; s < stripes.length; s++) {
+				for (int i = starts[s]; i < ends[s]; i++) {
+					keys[j] = stripes[s].keys[i];
+					values[j] = stripes[s].values[i];
+					packed[j] = ((long) keys[j] << 32) | j;
+					j++;
+				}
+			}
+			Arrays.sort(packed);
+			Entries out = new Entries(new int[n], new LambdasAndStreams.Customer[n]);
+			for (int i = 0; i < n; i++) {
+				int src = (int) packed[i];
+				out.keys[i] = keys[src];
+				out.values[i] = values[src];
+			}
+			return out;
+		}
+	}
+
+	private static final class Entries {
+		final int[] keys;
+		final LambdasAndStreams.Customer[] values;
+
+		Entries(int[] keys, LambdasAndStreams.Customer[] values) {
+			this.keys = keys;
+			this.values = values;
+		}
+	}
+
+	//----------------------------- Immutable structure -----------------------------
+
+	private static final class Root {
+		final Stripe[] stripes;
+		final int size;
+		final long version;
+
+		Root(Stripe[] stripes, int size, long version) {
+			this.stripes = stripes;
+			this.size = size;
+			this.version = version;
+		}
+	}
+
+	//Sorted keys and their Customers.  Never changed after construction; every write makes a new Stripe.
+	private static final class Stripe {
+		final int[] keys;
+		final LambdasAndStreams.Customer[] values;
+
+		Stripe(int[] keys, LambdasAndStreams.Customer[] values) {
+			this.keys = keys;
+			this.values = values;
+		}
+
+		LambdasAndStreams.Customer get(int key) {
+			int i = Arrays.binarySearch(keys, key);
+			return i < 0 ? null : values[i];
+		}
+
+		Stripe with(int key, LambdasAndStreams.Customer customer) {
+			int i = Arrays.binarySearch(keys, key);
+			if (i >= 0) {
+				//Replacing: the keys don't change, so the new Stripe shares them
+				LambdasAndStreams.Customer[] v = values.clone();
+				v[i] = customer;
+				return new Stripe(keys, v);
+			}
+			int at = -i - 1;
+			int n = keys.length;
+			int[] k = new int[n + 1];
+			LambdasAndStreams.Customer[] v = new LambdasAndStreams.Customer[n + 1];
+			System.arraycopy(keys, 0, k, 0, at);
+			System.arraycopy(values, 0, v, 0, at);
+			k[at] = key;
+			v[at] = customer;
+			System.arraycopy(keys, at, k, at + 1, n - at);
+			System.arraycopy(values, at, v, at + 1, n - at);
+			return new Stripe(k, v);
+		}
+
+		Stripe without(int key) {
+			int i = Arrays.binarySearch(keys, key);
+			if (i < 0) {
+				return this;
+			}
+			int n = keys.length;
+			int[] k = new int[n - 1];
+			LambdasAndStreams.Customer[] v = new LambdasAndStreams.Customer[n - 1];
+			System.arraycopy(keys, 0, k, 0, i);
+			System.arraycopy(values, 0, v, 0, i);
+			System.arraycopy(keys, i + 1, k, i, n - i - 1);
+			System.arraycopy(values, i + 1, v, i, n - i - 1);
+			return new Stripe(k, v);
+		}
+
+		//Applies a batch's operations for this stripe (a null Customer means remove) in one merge pass, so loading
+		//a whole table costs a sort per stripe instead of one copy per key.  The keys are distinct.
+		Stripe merge(int[] opKeys, LambdasAndStreams.Customer[] opValues) {
+			long[] packed = new long[opKeys.length];
+			for (int i = 0; i < opKeys.length; i++) {
+				packed[i] = ((long) opKeys[i] << 32) | i;
+			}
+			Arrays.sort(packed);
+			int[] k = new int[keys.length + opKeys.length];
+			LambdasAndStreams.Customer[] v = new LambdasAndStreams.Customer[k.length];
+			int a = 0, b = 0, n = 0;
+			while (a < keys.length || b < packed.length) {
+				int opKey = b < packed.length ? (int) (packed[b] >> 32) : 0;
+				if (b == packed.length || (a < keys.length && keys[a] < opKey)) {
+					k[n] = keys[a];
+					v[n++] = values[a++];
+					continue;
+				}
+				if (a < keys.length && keys[a] == opKey) {
+					a++; //replaced or removed by the op
+				}
+				LambdasAndStreams.Customer c = opValues[(int) packed[b++]];
+				if (c != null) {
+					k[n] = opKey;
+					v[n++] = c;
+				}
+			}
+			if (n == 0) {
+				return EMPTY;
+			}
+			return n == k.length ? new Stripe(k, v) : new Stripe(Arrays.copyOf(k, n), Arrays.copyOf(v, n));
+		}
+	}
+
+	private static int lowerBound(int[] keys, int key) {
+		int lo = 0, hi = keys.length;
+		while (lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			if (keys[mid] < key) {
+				lo = mid + 1;
+			} else {
+				hi = mid;
+			}
+		}
+		return lo;
+	}
+}
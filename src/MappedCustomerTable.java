@@ -0,0 +1,343 @@
+/*
+  MappedCustomerTable: A read-only customer table (int key -> Customer) that lives in a memory-mapped file
+  instead of a HashMap<Integer, Customer>.  write() saves a table once; open() maps it back in without
+  reading or parsing anything, so even a table of tens of millions of rows is ready in milliseconds and
+  none of it counts against the Java heap (the OS pages it in on demand and shares it across restarts).
+
+  File layout (all big-endian):
+      header   32 bytes   magic, version, row count, reserved, heap start (long), heap length (long)
+      records  32 bytes per row, sorted by key:
+                   int key, int age, long name, long phone, long email
+               each long is a string reference: length in the top 24 bits, heap offset in the low 40 bits,
+               or -1 for a null string
+      heap     the UTF-8 bytes of every string, back to back
+  Both regions are mapped in 1GB chunks (a single MappedByteBuffer can't go past 2GB).  Records are 32
+  bytes so they never straddle a chunk, and the writer pads the heap so no string does either.
+
+  Lookups binary search the sorted records.  range() returns a Range view over consecutive records:
+  keys and ages are read straight from the mapping, and a Customer is only built when you ask for one.  */
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+public class MappedCustomerTable implements AutoCloseable {
+	static final int MAGIC = 0x43555354; //"CUST"
+	static final int VERSION = 1;
+	static final int HEADER_SIZE = 32;
+	static final int RECORD_SIZE = 32;
+	static final int CHUNK_SHIFT = 30;
+	static final long CHUNK_SIZE = 1L << CHUNK_SHIFT;
+	static final long NULL_REF = -1L;
+	static final int MAX_STRING_BYTES = (1 << 24) - 2;
+	private static final long OFFSET_MASK = (1L << 40) - 1;
+
+	private final FileChannel channel;
+	private final int size;
+	private final MappedByteBuffer[] records;
+	private final MappedByteBuffer[] heap;
+
+	private MappedCustomerTable(FileChannel channel) throws IOException {
+		this.channel = channel;
+		ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+		channel.read(header, 0);
+		header.flip();
+		if (header.remaining() < HEADER_SIZE || header.getInt() != MAGIC) {
+			throw new IOException("Not a customer table file");
+		}
+		int version = header.getInt();
+		if (version != VERSION) {
+			throw new IOException("Unsupported customer table version: " + version);
+		}
+		this.size = header.getInt();
+		header.getInt();
+		long heapStart = header.getLong();
+		long heapLength = header.getLong();
+		this.records = map(channel, HEADER_SIZE, (long) size * RECORD_SIZE);
+		this.heap = map(channel, heapStart, heapLength);
+	}
+
+	public static MappedCustomerTable open(Path file) throws IOException {
+		FileChannel ch = FileChannel.open(file, StandardOpenOption.READ);
+		try {
+			return new MappedCustomerTable(ch);
+		} catch (IOException | RuntimeException e) {
+			ch.close();
+			throw e;
+		}
+	}
+
+	//Saves a table like createCustomersTable() returns.  Overwrites the file if it exists.
+	public static void write(Path file, Map<Integer,LambdasAndStreams.Customer> table) throws IOException {
+		int[] keys = new int[table.size()];
+		int k = 0;
+		for (Integer key : table.keySet()) {
+			keys[k++] = key;
+		}
+		Arrays.sort(keys);
+		long heapStart = HEADER_SIZE + (long) keys.length * RECORD_SIZE;
+
+		try (FileChannel ch = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+		                                       StandardOpenOption.TRUNCATE_EXISTING)) {
+			Writer recordOut = new Writer(ch, HEADER_SIZE);
+			Writer heapOut = new Writer(ch, heapStart);
+			for (int key : keys) {
+				LambdasAndStreams.Customer c = table.get(key);
+				recordOut.putInt(key);
+				recordOut.putInt(c.getAge());
+				recordOut.putLong(heapOut.putString(c.getName()));
+				recordOut.putLong(heapOut.putString(c.getPhone()));
+				recordOut.putLong(heapOut.putString(c.getEmail()));
+			}
+			recordOut.flush();
+			long heapLength = heapOut.flush();
+
+			ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+			header.putInt(MAGIC).putInt(VERSION).putInt(keys.length).putInt(0).putLong(heapStart).putLong(heapLength).flip();
+			while (header.hasRemaining()) {
+				ch.write(header, header.position());
+			}
+		}
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean containsKey(int key) {
+		return indexOf(key) >= 0;
+	}
+
+	//The customer stored under key, or null
+	public LambdasAndStreams.Customer get(int key) {
+		int i = indexOf(key);
+		return i < 0 ? null : customerAt(i);
+	}
+
+	//Every row with fromKey <= key < toKey, in key order.  Replaces entrySet().stream().filter(c -> c.getKey() < 10)
+	public Range range(int fromKey, int toKey) {
+		int from = lowerBound(fromKey);
+		int to = Math.max(from, lowerBound(toKey));
+		return new Range(from, to);
+	}
+
+	public Range all() {
+		return new Range(0, size);
+	}
+
+	//Nothing to flush, the table is read-only.  The mappings themselves are released when they are garbage collected.
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+
+	//----------------------------- Record access -----------------------------
+
+	int keyAt(int row) {
+		return chunk(records, (long) row * RECORD_SIZE).getInt(offsetInChunk((long) row * RECORD_SIZE));
+	}
+
+	int ageAt(int row) {
+		long pos = (long) row * RECORD_SIZE + 4;
+		return chunk(records, pos).getInt(offsetInChunk(pos));
+	}
+
+	LambdasAndStreams.Customer customerAt(int row) {
+		long pos = (long) row * RECORD_SIZE;
+		ByteBuffer b = chunk(records, pos);
+		int base = offsetInChunk(pos);
+		return new LambdasAndStreams.Customer(string(b.getLong(base + 8)), string(b.getLong(base + 16)),
+		                                      b.getInt(base + 4), string(b.getLong(base + 24)));
+	}
+
+	private String string(long ref) {
+		if (ref == NULL_REF) {
+			return null;
+		}
+		long offset = ref & OFFSET_MASK;
+		int length = (int) (ref >>> 40);
+		if (length == 0) {
+			return ""; //Its offset can be the very end of the heap, past the last chunk
+		}
+		byte[] bytes = new byte[length];
+		ByteBuffer b = chunk(heap, offset).duplicate();
+		b.position(offsetInChunk(offset));
+		b.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	private int indexOf(int key) {
+		int i = lowerBound(key);
+		return i < size && keyAt(i) == key ? i : -1;
+	}
+
+	//First row whose key is >= key
+	private int lowerBound(int key) {
+		int lo = 0, hi = size;
+		while (lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			if (keyAt(mid) < key) {
+				lo = mid + 1;
+			} else {
+				hi = mid;
+			}
+		}
+		return lo;
+	}
+
+	private static ByteBuffer chunk(MappedByteBuffer[] chunks, long pos) {
+		return chunks[(int) (pos >>> CHUNK_SHIFT)];
+	}
+
+	private static int offsetInChunk(long pos) {
+		return (int) (pos & (CHUNK_SIZE - 1));
+	}
+
+	private static MappedByteBuffer[] map(FileChannel ch, long start, long length) throws IOException {
+		int n = (int) ((length + CHUNK_SIZE - 1) >>> CHUNK_SHIFT);
+		MappedByteBuffer[] chunks = new MappedByteBuffer[n];
+		for (int i = 0; i < n; i++) {
+			long offset = (long) i << CHUNK_SHIFT;
+			chunks[i] = ch.map(FileChannel.MapMode.READ_ONLY, start + offset, Math.min(CHUNK_SIZE, length - offset));
+		}
+		return chunks;
+	}
+
+	//----------------------------- Views -----------------------------
+
+	//Consecutive rows [from, to) of the table, in key order.  Nothing is copied.
+	public final class Range {
+		private final int from;
+		private final int to;
+
+		private Range(int from, int to) {
+			this.from = from;
+			this.to = to;
+		}
+
+		public int size() {
+			return to - from;
+		}
+
+		public int key(int index) {
+			return keyAt(from + checkIndex(index));
+		}
+
+		public int age(int index) {
+			return ageAt(from + checkIndex(index));
+		}
+
+		public IntStream keys() {
+			return IntStream.range(from, to).map(MappedCustomerTable.this::keyAt);
+		}
+
+		//Read-only view: every get() decodes that one row from the mapping
+		public List<LambdasAndStreams.Customer> customers() {
+			return new AbstractList<LambdasAndStreams.Customer>() {
+				@Override
+				public LambdasAndStreams.Customer get(int index) {
+					return customerAt(from + checkIndex(index));
+				}
+
+				@Override
+				public int size() {
+					return to - from;
+				}
+			};
+		}
+
+		private int checkIndex(int index) {
+			if (index < 0 || index >= to - from) {
+				throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + (to - from));
+			}
+			return index;
+		}
+	}
+
+	//----------------------------- Writing -----------------------------
+
+	//Buffered positional writes into one region of the file.
+	private static final class Writer {
+		private final FileChannel ch;
+		private final long start;
+		private final ByteBuffer buf = ByteBuffer.allocateDirect(1 << 16);
+		private long written;
+
+		Writer(FileChannel ch, long start) {
+			this.ch = ch;
+			this.start = start;
+		}
+
+		void putInt(int v) throws IOException {
+			ensure(4);
+			buf.putInt(v);
+		}
+
+		void putLong(long v) throws IOException {
+			ensure(8);
+			buf.putLong(v);
+		}
+
+		//Appends the string's bytes and returns its reference (see the file layout above)
+		long putString(String s) throws IOException {
+			if (s == null) {
+				return NULL_REF;
+			}
+			byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+			if (bytes.length > MAX_STRING_BYTES) {
+				throw new IllegalArgumentException("String too long for a customer table: " + bytes.length + " bytes");
+			}
+			long pos = position();
+			long room = CHUNK_SIZE - (pos & (CHUNK_SIZE - 1));
+			if (bytes.length > room) {
+				padTo(pos + room);
+				pos = position();
+			}
+			if (pos > OFFSET_MASK) {
+				throw new IllegalArgumentException("Customer table string heap is full");
+			}
+			for (int i = 0; i < bytes.length; ) {
+				ensure(1);
+				int n = Math.min(buf.remaining(), bytes.length - i);
+				buf.put(bytes, i, n);
+				i += n;
+			}
+			return ((long) bytes.length << 40) | pos;
+		}
+
+		long position() {
+			return written + buf.position();
+		}
+
+		//Writes out what is buffered and returns the total length of the region
+		long flush() throws IOException {
+			buf.flip();
+			while (buf.hasRemaining()) {
+				written += ch.write(buf, start + written);
+			}
+			buf.clear();
+			return written;
+		}
+
+		private void padTo(long pos) throws IOException {
+			while (position() < pos) {
+				ensure(1);
+				buf.put((byte) 0);
+			}
+		}
+
+		private void ensure(int bytes) throws IOException {
+			if (buf.remaining() < bytes) {
+				flush();
+			}
+		}
+	}
+}
@@ -0,0 +1,219 @@
+/*
+  ParallelRecipes: The int[] and List<Customer> recipes from the tutorial, run on a dedicated ForkJoinPool.
+
+  - Every operation checks the input size first.  Below the threshold it runs the plain sequential stream,
+    because splitting a few thousand elements across threads costs more than it saves.
+  - The parallel streams are started from INSIDE our own pool, so their tasks run on our workers and not on
+    ForkJoinPool.commonPool() (which everything else in the JVM shares).
+  - Results are deterministic: every stream here is ordered, so toArray(), distinct() (keeps the first
+    occurrence) and Collectors.toCollection(ArrayList::new) come back in the same order as the sequential
+    version, and max()/min() return the first of equal elements.  This only holds for a real Comparator
+    (one that returns 0 for equal elements), not the (x,y) -> x > y ? 1 : -1 kind from the tutorial.
+
+  Use bench/ScalingReport to see where the threshold should sit on your hardware.  */
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Optional;
+import java.util.OptionalInt;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
+import java.util.function.IntPredicate;
+import java.util.function.IntUnaryOperator;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+public class ParallelRecipes implements AutoCloseable {
+	//Below these sizes the sequential stream wins on typical hardware.  Per element work on a Customer
+	//(a pointer chase plus a lambda) is heavier than on an int, so Customers go parallel sooner.
+	static final int DEFAULT_INT_THRESHOLD = 1 << 17;
+	static final int DEFAULT_OBJECT_THRESHOLD = 1 << 13;
+	//Parallel sorts cut the input into parallelism() * SORT_CHUNKS_PER_THREAD runs of at least MIN_SORT_CHUNK
+	static final int SORT_CHUNKS_PER_THREAD = 4;
+	static final int MIN_SORT_CHUNK = 1 << 12;
+
+	private final ForkJoinPool pool;
+	private final int intThreshold;
+	private final int objectThreshold;
+
+	public ParallelRecipes() {
+		this(Runtime.getRuntime().availableProcessors(), DEFAULT_INT_THRESHOLD, DEFAULT_OBJECT_THRESHOLD);
+	}
+
+	public ParallelRecipes(int parallelism, int intThreshold, int objectThreshold) {
+		if (parallelism < 1) {
+			throw new IllegalArgumentException("parallelism must be at least 1: " + parallelism);
+		}
+		this.pool = new ForkJoinPool(parallelism);
+		this.intThreshold = intThreshold;
+		this.objectThreshold = objectThreshold;
+	}
+
+	public int parallelism() {
+		return pool.getParallelism();
+	}
+
+	//----------------------------- int[] recipes -----------------------------
+
+	public OptionalInt min(int[] arr) {
+		boolean par = arr.length >= intThreshold;
+		return run(par, () -> stream(arr, par).min());
+	}
+
+	public OptionalInt max(int[] arr) {
+		boolean par = arr.length >= intThreshold;
+		return run(par, () -> stream(arr, par).max());
+	}
+
+	//Keeps the first occurrence of each value, in encounter order
+	public int[] distinct(int[] arr) {
+		boolean par = arr.length >= intThreshold;
+		return run(par, () -> stream(arr, par).distinct().toArray());
+	}
+
+	public int[] filter(int[] arr, IntPredicate keep) {
+		boolean par = arr.length >= intThreshold;
+		return run(par, () -> stream(arr, par).filter(keep).toArray());
+	}
+
+	public int[] map(int[] arr, IntUnaryOperator mapper) {
+		boolean par = arr.length >= intThreshold;
+		return run(par, () -> stream(arr, par).map(mapper).toArray());
+	}
+
+	//Sorted copy.  Not Arrays.parallelSort: that splits by the COMMON pool's parallelism (and doesn't split at
+	//all when it is 1), whatever pool it runs in.  This sorts chunks on our workers and merges them.
+	public int[] sorted(int[] arr) {
+		int[] out = arr.clone();
+		int chunks = sortChunks(out.length);
+		if (out.length < intThreshold || chunks < 2) {
+			Arrays.sort(out);
+			return out;
+		}
+		return run(true, () -> {
+			IntStream.range(0, chunks).parallel().forEach(c -> Arrays.sort(out, bound(out.length, chunks, c), bound(out.length, chunks, c + 1)));
+			int[] from = out;
+			int[] to = new int[out.length];
+			for (int width = 1; width < chunks; width *= 2) {
+				int w = width;
+				int[] src = from, dst = to;
+				IntStream.range(0, (chunks + 2*w - 1) / (2*w)).parallel().forEach(m -> {
+					int lo = bound(src.length, chunks, 2*w*m);
+					int mid = bound(src.length, chunks, Math.min(2*w*m + w, chunks));
+					int hi = bound(src.length, chunks, Math.min(2*w*m + 2*w, chunks));
+					merge(src, dst, lo, mid, hi);
+				});
+				from = dst;
+				to = src;
+			}
+			return from;
+		});
+	}
+
+	//----------------------------- List<Customer> recipes -----------------------------
+
+	public ArrayList<LambdasAndStreams.Customer> filter(List<LambdasAndStreams.Customer> custs, Predicate<LambdasAndStreams.Customer> keep) {
+		boolean par = custs.size() >= objectThreshold;
+		return run(par,
+		           () -> stream(custs, par).filter(keep).collect(Collectors.toCollection(ArrayList::new)));
+	}
+
+	public Optional<LambdasAndStreams.Customer> max(List<LambdasAndStreams.Customer> custs, Comparator<LambdasAndStreams.Customer> comparator) {
+		boolean par = custs.size() >= objectThreshold;
+		return run(par, () -> stream(custs, par).max(comparator));
+	}
+
+	public Optional<LambdasAndStreams.Customer> min(List<LambdasAndStreams.Customer> custs, Comparator<LambdasAndStreams.Customer> comparator) {
+		boolean par = custs.size() >= objectThreshold;
+		return run(par, () -> stream(custs, par).min(comparator));
+	}
+
+	//Sorted copy, stable like the sequential sorted().  Chunks and merges like sorted(int[]), for the same reason
+	//(a parallel stream's sorted() is Arrays.parallelSort underneath).
+	public ArrayList<LambdasAndStreams.Customer> sorted(List<LambdasAndStreams.Customer> custs, Comparator<LambdasAndStreams.Customer> comparator) {
+		LambdasAndStreams.Customer[] out = custs.toArray(new LambdasAndStreams.Customer[0]);
+		int chunks = sortChunks(out.length);
+		if (out.length < objectThreshold || chunks < 2) {
+			Arrays.sort(out, comparator);
+			return new ArrayList<LambdasAndStreams.Customer>(Arrays.asList(out));
+		}
+		return run(true, () -> {
+			IntStream.range(0, chunks).parallel().forEach(c -> Arrays.sort(out, bound(out.length, chunks, c), bound(out.length, chunks, c + 1), comparator));
+			LambdasAndStreams.Customer[] from = out;
+			LambdasAndStreams.Customer[] to = new LambdasAndStreams.Customer[out.length];
+			for (int width = 1; width < chunks; width *= 2) {
+				int w = width;
+				LambdasAndStreams.Customer[] src = from, dst = to;
+				IntStream.range(0, (chunks + 2*w - 1) / (2*w)).parallel().forEach(m -> {
+					int lo = bound(src.length, chunks, 2*w*m);
+					int mid = bound(src.length, chunks, Math.min(2*w*m + w, chunks));
+					int hi = bound(src.length, chunks, Math.min(2*w*m + 2*w, chunks));
+					merge(src, dst, lo, mid, hi, comparator);
+				});
+				from = dst;
+				to = src;
+			}
+			return new ArrayList<LambdasAndStreams.Customer>(Arrays.asList(from));
+		});
+	}
+
+	//Per group stats, each worker grouping its own chunk into its own HashMap (see CustomerGroups)
+	public <K> HashMap<K,Aggregates.IntStats> groupBy(List<LambdasAndStreams.Customer> custs,
+	                                                  Function<? super LambdasAndStreams.Customer,? extends K> key,
+	                                                  ToIntFunction<? super LambdasAndStreams.Customer> value) {
+		boolean par = custs.size() >= objectThreshold;
+		return run(par, () -> par ? CustomerGroups.groupByParallel(custs, key, value) : CustomerGroups.groupBy(custs, key, value));
+	}
+
+	@Override
+	public void close() {
+		pool.shutdown();
+	}
+
+	//----------------------------- Plumbing -----------------------------
+
+	private <T> T run(boolean parallel, Supplier<T> task) {
+		return parallel ? pool.submit(() -> task.get()).join() : task.get();
+	}
+
+	//How many runs a parallel sort of n elements is cut into; below 2 it isn't worth a parallel sort
+	private int sortChunks(int n) {
+		return Math.min(n / MIN_SORT_CHUNK, parallelism() * SORT_CHUNKS_PER_THREAD);
+	}
+
+	//Where chunk c of n elements cut into chunks starts
+	private static int bound(int n, int chunks, int c) {
+		return (int) ((long) n * c / chunks);
+	}
+
+	//Sorted src[lo, mid) and src[mid, hi) into dst[lo, hi)
+	private static void merge(int[] src, int[] dst, int lo, int mid, int hi) {
+		int i = lo, j = mid;
+		for (int k = lo; k < hi; k++) {
+			dst[k] = j >= hi || (i < mid && src[i] <= src[j]) ? src[i++] : src[j++];
+		}
+	}
+
+	//Same, taking from the left run on ties so the sort stays stable
+	private static <T> void merge(T[] src, T[] dst, int lo, int mid, int hi, Comparator<? super T> cmp) {
+		int i = lo, j = mid;
+		for (int k = lo; k < hi; k++) {
+			dst[k] = j >= hi || (i < mid && cmp.compare(src[i], src[j]) <= 0) ? src[i++] : src[j++];
+		}
+	}
+
+	private static IntStream stream(int[] arr, boolean parallel) {
+		IntStream s = Arrays.stream(arr);
+		return parallel ? s.parallel() : s;
+	}
+
+	private static <T> Stream<T> stream(List<T> list, boolean parallel) {
+		return parallel ? list.parallelStream() : list.stream();
+	}
+}
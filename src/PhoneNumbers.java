@@ -0,0 +1,181 @@
+/*
+  PhoneNumbers: Normalize and validate phone numbers in one pass over the characters, with no regex, no
+  substring and no allocation.
+
+  The tutorial keeps a phone if customerPhone.length() == 10, which throws away "614-123-4567" and
+  "(614) 123-4567" and keeps "WeirdoCase".  parse() reads each char once and returns one long:
+      >= 0           VALID: the number in E.164 digits, "614-123-4567" -> 16141234567
+      INVALID        it is made of digits and separators, but not a possible phone number
+      NOT_A_NUMBER   anything else ("Frankfort, OH", "SomethingUnvalidated", null)
+  Accepted separators are spaces, '-', '.', '/', '(' and ')', plus one leading '+'.
+
+  What counts as valid:
+  - North American numbers (no '+', or '+1'): 10 digits, or 11 starting with the country code 1.  The
+    area code (first 3 digits) can't start with 0 or 1, so "123-456-7890" is INVALID.
+  - Other countries need the '+': 8 to 15 digits in total (the E.164 limits), country code not starting with 0.
+
+  normalize(custs) does a whole column at once into a long[] and a BitSet of the valid rows.  */
+import java.util.BitSet;
+import java.util.List;
+
+public class PhoneNumbers {
+	public enum Kind { VALID, INVALID, NOT_A_NUMBER }
+
+	public static final long INVALID = -1;
+	public static final long NOT_A_NUMBER = -2;
+
+	static final int MAX_DIGITS = 15;
+	private static final long NANP_COUNTRY = 10_000_000_000L; //1 followed by the 10 national digits
+
+	private PhoneNumbers() {
+	}
+
+	public static long parse(CharSequence phone) {
+		if (phone == null) {
+			return NOT_A_NUMBER;
+		}
+		long digits = 0;
+		int count = 0;
+		boolean plus = false;
+		boolean invalid = false;
+		for (int i = 0, n = phone.length(); i < n; i++) {
+			char ch = phone.charAt(i);
+			if (ch >= '0' && ch <= '9') {
+				//Keep counting past 15 digits so the result is INVALID, but stop before the long overflows
+				if (++count <= MAX_DIGITS) {
+					digits = digits * 10 + (ch - '0');
+				}
+			} else if (ch == '+') {
+				invalid |= plus || count > 0;
+				plus = true;
+			} else if (ch != ' ' && ch != '-' && ch != '.' && ch != '/' && ch != '(' && ch != ')') {
+				return NOT_A_NUMBER;
+			}
+		}
+		if (count == 0) {
+			return NOT_A_NUMBER;
+		}
+		if (invalid || count > MAX_DIGITS) {
+			return INVALID;
+		}
+		if (count == 10 && !plus) {
+			return nanp(digits);
+		}
+		if (count == 11 && digits / NANP_COUNTRY == 1) {
+			return nanp(digits - NANP_COUNTRY);
+		}
+		if (plus && count >= 8 && digits / pow10(count - 1) > 1) {
+			return digits;
+		}
+		return INVALID;
+	}
+
+	public static boolean isValid(CharSequence phone) {
+		return parse(phone) >= 0;
+	}
+
+	public static Kind classify(long parsed) {
+		return parsed >= 0 ? Kind.VALID : parsed == INVALID ? Kind.INVALID : Kind.NOT_A_NUMBER;
+	}
+
+	public static Kind classify(CharSequence phone) {
+		return classify(parse(phone));
+	}
+
+	//A valid parse() result as "+16141234567", null otherwise
+	public static String toE164(long parsed) {
+		return parsed < 0 ? null : "+" + parsed;
+	}
+
+	//A valid parse() result the way people write it: "614-123-4567" for North America, "+442079460958" otherwise
+	public static String format(long parsed) {
+		if (parsed < 0) {
+			return null;
+		}
+		if (parsed / NANP_COUNTRY != 1) {
+			return toE164(parsed);
+		}
+		long national = parsed - NANP_COUNTRY;
+		StringBuilder sb = new StringBuilder(12);
+		appendPadded(sb, national / 10_000_000, 3).append('-');
+		appendPadded(sb, national / 10_000 % 1000, 3).append('-');
+		return appendPadded(sb, national % 10_000, 4).toString();
+	}
+
+	//No area code starts with 0 or 1
+	private static long nanp(long national) {
+		return national / 10_000_000 < 200 ? INVALID : NANP_COUNTRY + national;
+	}
+
+	private static long pow10(int exp) {
+		long p = 1;
+		for (int i = 0; i < exp; i++) {
+			p *= 10;
+		}
+		return p;
+	}
+
+	private static StringBuilder appendPadded(StringBuilder sb, long value, int width) {
+		for (long p = pow10(width - 1); p > 1 && value < p; p /= 10) {
+			sb.append('0');
+		}
+		return sb.append(value);
+	}
+
+	//----------------------------- Whole columns -----------------------------
+
+	public static Column normalize(List<LambdasAndStreams.Customer> custs) {
+		long[] numbers = new long[custs.size()];
+		BitSet valid = new BitSet(numbers.length);
+		int row = 0;
+		for (LambdasAndStreams.Customer c : custs) {
+			long p = parse(c.getPhone());
+			numbers[row] = p;
+			if (p >= 0) {
+				valid.set(row);
+			}
+			row++;
+		}
+		return new Column(numbers, valid);
+	}
+
+	//One parse() result per row, plus which rows are valid
+	public static final class Column {
+		private final long[] numbers;
+		private final BitSet valid;
+
+		Column(long[] numbers, BitSet valid) {
+			this.numbers = numbers;
+			this.valid = valid;
+		}
+
+		public int size() {
+			return numbers.length;
+		}
+
+		public long get(int row) {
+			return numbers[row];
+		}
+
+		public Kind kind(int row) {
+			return classify(numbers[row]);
+		}
+
+		public boolean isValid(int row) {
+			return valid.get(row);
+		}
+
+		public int validCount() {
+			return valid.cardinality();
+		}
+
+		//A copy, so callers can and()/or() it with other row sets (like CustomerStore's)
+		public BitSet valid() {
+			return (BitSet) valid.clone();
+		}
+
+		public long[] toArray() {
+			return numbers.clone();
+		}
+	}
+}
@@ -0,0 +1,112 @@
+/*
+  RankedMap: A Map<K,Integer> that stays ranked by value as you put() and remove(), for leaderboards that
+  are asked "who is on top?" far more often than they change.
+
+  Next to the plain HashMap of key -> value there is a TreeMap of value -> keys holding that value.  So:
+      put / remove       O(log n)
+      max / min          O(log n), no scan
+      top(k) / bottom(k) O(log n + k)
+  Keys with equal values are returned in the order they got that value.  Not thread-safe: guard it
+  with a lock (or give each thread its own) if several threads write.  */
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Optional;
+import java.util.TreeMap;
+
+public class RankedMap<K> {
+	private final HashMap<K,Integer> values = new HashMap<K,Integer>();
+	private final TreeMap<Integer,LinkedHashSet<K>> byValue = new TreeMap<Integer,LinkedHashSet<K>>();
+
+	public RankedMap() {
+	}
+
+	public RankedMap(Map<K,Integer> initial) {
+		initial.forEach(this::put);
+	}
+
+	public int size() {
+		return values.size();
+	}
+
+	public Integer get(K key) {
+		return values.get(key);
+	}
+
+	//Returns the previous value, or null if the key is new
+	public Integer put(K key, int value) {
+		Integer old = values.put(key, value);
+		if (old != null) {
+			if (old == value) {
+				return old;
+			}
+			unlink(key, old);
+		}
+		byValue.computeIfAbsent(value, v -> new LinkedHashSet<K>()).add(key);
+		return old;
+	}
+
+	//Returns the removed value, or null if the key wasn't there
+	public Integer remove(K key) {
+		Integer old = values.remove(key);
+		if (old != null) {
+			unlink(key, old);
+		}
+		return old;
+	}
+
+	public Optional<Entry<K,Integer>> max() {
+		Entry<Integer,LinkedHashSet<K>> e = byValue.lastEntry();
+		return e == null ? Optional.empty() : Optional.of(entry(e.getValue().iterator().next(), e.getKey()));
+	}
+
+	public Optional<Entry<K,Integer>> min() {
+		Entry<Integer,LinkedHashSet<K>> e = byValue.firstEntry();
+		return e == null ? Optional.empty() : Optional.of(entry(e.getValue().iterator().next(), e.getKey()));
+	}
+
+	//The k highest entries, highest first
+	public List<Entry<K,Integer>> top(int k) {
+		return take(byValue.descendingMap(), k);
+	}
+
+	//The k lowest entries, lowest first
+	public List<Entry<K,Integer>> bottom(int k) {
+		return take(byValue, k);
+	}
+
+	private List<Entry<K,Integer>> take(Map<Integer,LinkedHashSet<K>> ordered, int k) {
+		if (k < 0) {
+			throw new IllegalArgumentException("k must not be negative: " + k);
+		}
+		List<Entry<K,Integer>> out = new ArrayList<Entry<K,Integer>>(Math.min(k, values.size()));
+		Iterator<Entry<Integer,LinkedHashSet<K>>> buckets = ordered.entrySet().iterator();
+		while (out.size() < k && buckets.hasNext()) {
+			Entry<Integer,LinkedHashSet<K>> bucket = buckets.next();
+			for (K key : bucket.getValue()) {
+				if (out.size() == k) {
+					break;
+				}
+				out.add(entry(key, bucket.getKey()));
+			}
+		}
+		return out;
+	}
+
+	private void unlink(K key, Integer value) {
+		LinkedHashSet<K> keys = byValue.get(value);
+		keys.remove(key);
+		if (keys.isEmpty()) {
+			byValue.remove(value);
+		}
+	}
+
+	private static <K> Entry<K,Integer> entry(K key, Integer value) {
+		return new AbstractMap.SimpleImmutableEntry<K,Integer>(key, value);
+	}
+}
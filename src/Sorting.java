@@ -0,0 +1,200 @@
+/*
+  Sorting: Sort ints, and Customers by an int or String key, without boxing and without a Comparator call
+  per comparison.
+
+  sorted(Comparator.reverseOrder()) on a List<Integer> boxes every element and calls the Comparator about
+  n*log(n) times; Comparator.comparing(Customer::getAge) boxes the age on EVERY one of those calls.  Here:
+  - int[] ascending/descending: small arrays use Arrays.sort, mid-size arrays an LSD radix sort (4 passes
+    of 8 bits, passes where every element has the same byte are skipped), and very large arrays
+    Arrays.parallelSort on machines with more than one core.  Descending is ascending plus an O(n) reverse.
+  - Customers by an int key: the key is pulled out ONCE per Customer and packed with the Customer's index
+    into a long, then the long[] is sorted as plain primitives.  Equal keys keep their original order.
+  - Customers by a String key: the keys are pulled out once, only the DISTINCT keys are sorted (natural
+    order, no Comparator), and the Customers are then sorted by each key's int rank the same way as above.
+    Also stable; null keys sort first.
+  The orderBy... methods return the sorted order as list indexes, the sortBy... methods a new list.  */
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+
+public class Sorting {
+	static final int RADIX_THRESHOLD = 1 << 12;
+	static final int PARALLEL_THRESHOLD = 1 << 20;
+
+	private Sorting() {
+	}
+
+	//Least to greatest, in place
+	public static void sort(int[] a) {
+		if (a.length < RADIX_THRESHOLD) {
+			Arrays.sort(a);
+		} else if (a.length >= PARALLEL_THRESHOLD && Runtime.getRuntime().availableProcessors() > 1) {
+			Arrays.parallelSort(a);
+		} else {
+			radixSort(a);
+		}
+	}
+
+	//Greatest to least, in place (replaces sorted(Comparator.reverseOrder()) on a List<Integer>)
+	public static void sortDescending(int[] a) {
+		sort(a);
+		reverse(a, a.length);
+	}
+
+	public static int[] sortedCopy(int[] a, boolean descending) {
+		int[] out = a.clone();
+		if (descending) {
+			sortDescending(out);
+		} else {
+			sort(out);
+		}
+		return out;
+	}
+
+	//LSD radix sort on the 4 bytes of each int.  The top byte has its sign bit flipped so negatives come first.
+	static void radixSort(int[] a) {
+		int n = a.length;
+		if (n < 2) {
+			return;
+		}
+		int[] src = a;
+		int[] dst = new int[n];
+		int[] counts = new int[256];
+		for (int shift = 0; shift < 32; shift += 8) {
+			int flip = shift == 24 ? 0x80 : 0;
+			Arrays.fill(counts, 0);
+			for (int v : src) {
+				counts[((v >>> shift) & 0xFF) ^ flip]++;
+			}
+			//Every element has the same byte here, so this pass wouldn't move anything
+			if (counts[((src[0] >>> shift) & 0xFF) ^ flip] == n) {
+				continue;
+			}
+			int sum = 0;
+			for (int b = 0; b < 256; b++) {
+				int c = counts[b];
+				counts[b] = sum;
+				sum += c;
+			}
+			for (int v : src) {
+				dst[counts[((v >>> shift) & 0xFF) ^ flip]++] = v;
+			}
+			int[] t = src;
+			src = dst;
+			dst = t;
+		}
+		if (src != a) {
+			System.arraycopy(src, 0, a, 0, n);
+		}
+	}
+
+	//----------------------------- Customers by an int key -----------------------------
+
+	//Replaces custs.stream().sorted(Comparator.comparing(Customer::getAge))
+	public static List<LambdasAndStreams.Customer> sortByAge(List<LambdasAndStreams.Customer> custs, boolean descending) {
+		return sortByInt(custs, LambdasAndStreams.Customer::getAge, descending);
+	}
+
+	public static <T> List<T> sortByInt(List<T> items, ToIntFunction<? super T> key, boolean descending) {
+		return pick(items, orderByInt(items, key, descending));
+	}
+
+	//The indexes of items in key order.  Each key is read exactly once.
+	public static <T> int[] orderByInt(List<T> items, ToIntFunction<? super T> key, boolean descending) {
+		int[] keys = new int[items.size()];
+		int i = 0;
+		for (T item : items) {
+			keys[i++] = key.applyAsInt(item);
+		}
+		return orderByRank(keys, descending);
+	}
+
+	//Packs each key with its index into a long and sorts the long[]: no Comparator, and because the index is
+	//in the low 32 bits, equal keys stay in their original order.
+	private static int[] orderByRank(int[] keys, boolean descending) {
+		int n = keys.length;
+		long[] packed = new long[n];
+		for (int i = 0; i < n; i++) {
+			//Flipping the sign bit makes the key sort as unsigned; inverting it gives descending order.
+			long k = (keys[i] ^ Integer.MIN_VALUE) & 0xFFFFFFFFL;
+			if (descending) {
+				k = ~k & 0xFFFFFFFFL;
+			}
+			packed[i] = ((k << 32) | i) ^ Long.MIN_VALUE;
+		}
+		Arrays.sort(packed);
+		int[] order = new int[n];
+		for (int j = 0; j < n; j++) {
+			order[j] = (int) packed[j];
+		}
+		return order;
+	}
+
+	//----------------------------- Customers by a String key -----------------------------
+
+	//Replaces custs.stream().sorted(Comparator.comparing(Customer::getName))
+	public static List<LambdasAndStreams.Customer> sortByName(List<LambdasAndStreams.Customer> custs, boolean descending) {
+		return sortByString(custs, LambdasAndStreams.Customer::getName, descending);
+	}
+
+	public static <T> List<T> sortByString(List<T> items, Function<? super T,String> key, boolean descending) {
+		return pick(items, orderByString(items, key, descending));
+	}
+
+	//Each distinct key is sorted once (natural String order, no Comparator) and numbered by rank; then the
+	//Customers are sorted by that int rank exactly like orderByInt.  So n Customers with d distinct keys cost
+	//n hash lookups plus a d*log(d) String sort, instead of n*log(n) String comparisons.
+	public static <T> int[] orderByString(List<T> items, Function<? super T,String> key, boolean descending) {
+		int n = items.size();
+		String[] keys = new String[n];
+		int i = 0;
+		for (T item : items) {
+			keys[i++] = key.apply(item);
+		}
+		String[] distinct = Distinct.of(keys, true);
+		int nulls = 0;
+		for (String k : distinct) {
+			if (k == null) {
+				nulls = 1;
+			}
+		}
+		String[] ranked = new String[distinct.length - nulls];
+		int r = 0;
+		for (String k : distinct) {
+			if (k != null) {
+				ranked[r++] = k;
+			}
+		}
+		Arrays.sort(ranked);
+		HashMap<String,Integer> rankOf = new HashMap<String,Integer>(ranked.length * 2);
+		for (int j = 0; j < ranked.length; j++) {
+			rankOf.put(ranked[j], j + nulls); //null keys get rank 0, so they sort first
+		}
+		int[] ranks = new int[n];
+		for (int j = 0; j < n; j++) {
+			ranks[j] = keys[j] == null ? 0 : rankOf.get(keys[j]);
+		}
+		return orderByRank(ranks, descending);
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <T> List<T> pick(List<T> items, int[] order) {
+		Object[] all = items.toArray();
+		List<T> out = new ArrayList<T>(order.length);
+		for (int i : order) {
+			out.add((T) all[i]);
+		}
+		return out;
+	}
+
+	static void reverse(int[] a, int length) {
+		for (int i = 0, j = length - 1; i < j; i++, j--) {
+			int t = a[i];
+			a[i] = a[j];
+			a[j] = t;
+		}
+	}
+}
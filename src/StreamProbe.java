@@ -0,0 +1,358 @@
+/*
+  StreamProbe: Find out which stage of a stream pipeline costs the time and how many elements each stage
+  drops, without a profiler.  Wrap the lambdas you pass to the stream, naming each stage:
+
+      StreamProbe probe = StreamProbe.of("less40_and_gmail");
+      custs.stream().filter(probe.filter("has email", p -> p.getEmail() != null))
+                    .filter(probe.filter("gmail", p -> p.getEmail().toLowerCase().contains("@gmail")))
+                    .collect(Collectors.toList());
+      System.out.println(probe.report());
+
+  For every stage it records:
+  - elements in and out (exact, also under parallel streams)
+  - time spent in the stage, and bytes the stage allocated.  Timing every element would cost more than most
+    lambdas do, so one element in SAMPLE_EVERY is timed (System.nanoTime) and measured (this thread's
+    allocated bytes), and the totals are extrapolated from those samples.  Treat them as approximate.
+  Every stage is also registered as a JMX MXBean (StreamProbe:pipeline=...,stage=...), so the counters show
+  up in JConsole/VisualVM or any JMX metrics exporter while the application runs.
+
+  Probes are OFF unless the JVM runs with -Dstreamprobe.enabled=true (or setEnabled(true) is called).  When
+  off, filter()/map() hand back the lambda they were given, so the pipeline runs exactly as if it had never
+  been wrapped.  The switch is read when the pipeline is BUILT: an already built stream keeps its mode.  */
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.IntPredicate;
+import java.util.function.IntUnaryOperator;
+import java.util.function.Predicate;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+public final class StreamProbe {
+	static final int SAMPLE_EVERY = 64;
+	static final String JMX_DOMAIN = "StreamProbe";
+
+	private static volatile boolean enabled = Boolean.getBoolean("streamprobe.enabled");
+	private static final Map<String,StreamProbe> PROBES = new ConcurrentHashMap<String,StreamProbe>();
+	//Allocated bytes per thread is a HotSpot extension; without it the allocation columns stay 0
+	private static final com.sun.management.ThreadMXBean ALLOCATION = allocationBean();
+
+	private final String pipeline;
+	private final Map<String,Stage> stages = new ConcurrentHashMap<String,Stage>();
+	private final List<Stage> order = new ArrayList<Stage>();
+
+	private StreamProbe(String pipeline) {
+		this.pipeline = pipeline;
+	}
+
+	public static boolean isEnabled() {
+		return enabled;
+	}
+
+	public static void setEnabled(boolean on) {
+		enabled = on;
+	}
+
+	//The probe for this pipeline name.  The same name always returns the same probe, so counters add up
+	//across every run of the pipeline.
+	public static StreamProbe of(String pipeline) {
+		return PROBES.computeIfAbsent(pipeline, StreamProbe::new);
+	}
+
+	//Every probe's report
+	public static String reportAll() {
+		StringBuilder sb = new StringBuilder();
+		for (StreamProbe p : PROBES.values()) {
+			sb.append(p.report());
+		}
+		return sb.toString();
+	}
+
+	//----------------------------- Wrapping stages -----------------------------
+
+	public <T> Predicate<T> filter(String stage, Predicate<T> keep) {
+		if (!enabled) {
+			return keep;
+		}
+		Stage s = stage(stage);
+		return t -> {
+			if (!s.sampleNext()) {
+				return s.counted(keep.test(t));
+			}
+			long bytes = s.threadBytes();
+			long start = System.nanoTime();
+			boolean kept;
+			try {
+				kept = keep.test(t);
+			} finally {
+				s.endSample(start, bytes);
+			}
+			return s.counted(kept);
+		};
+	}
+
+	public <T,R> Function<T,R> map(String stage, Function<T,R> mapper) {
+		if (!enabled) {
+			return mapper;
+		}
+		Stage s = stage(stage);
+		return t -> {
+			if (!s.sampleNext()) {
+				R r = mapper.apply(t);
+				s.counted(true);
+				return r;
+			}
+			long bytes = s.threadBytes();
+			long start = System.nanoTime();
+			R r;
+			try {
+				r = mapper.apply(t);
+			} finally {
+				s.endSample(start, bytes);
+			}
+			s.counted(true);
+			return r;
+		};
+	}
+
+	public IntPredicate filterInt(String stage, IntPredicate keep) {
+		if (!enabled) {
+			return keep;
+		}
+		Stage s = stage(stage);
+		return v -> {
+			if (!s.sampleNext()) {
+				return s.counted(keep.test(v));
+			}
+			long bytes = s.threadBytes();
+			long start = System.nanoTime();
+			boolean kept;
+			try {
+				kept = keep.test(v);
+			} finally {
+				s.endSample(start, bytes);
+			}
+			return s.counted(kept);
+		};
+	}
+
+	public IntUnaryOperator mapInt(String stage, IntUnaryOperator mapper) {
+		if (!enabled) {
+			return mapper;
+		}
+		Stage s = stage(stage);
+		return v -> {
+			if (!s.sampleNext()) {
+				int r = mapper.applyAsInt(v);
+				s.counted(true);
+				return r;
+			}
+			long bytes = s.threadBytes();
+			long start = System.nanoTime();
+			int r;
+			try {
+				r = mapper.applyAsInt(v);
+			} finally {
+				s.endSample(start, bytes);
+			}
+			s.counted(true);
+			return r;
+		};
+	}
+
+	//----------------------------- Results -----------------------------
+
+	public String pipeline() {
+		return pipeline;
+	}
+
+	//The stages in the order they were first wrapped
+	public List<Stage> stages() {
+		synchronized (order) {
+			return new ArrayList<Stage>(order);
+		}
+	}
+
+	public Stage stage(String name) {
+		return stages.computeIfAbsent(name, n -> {
+			Stage s = new Stage(pipeline, n);
+			synchronized (order) {
+				order.add(s);
+			}
+			s.register();
+			return s;
+		});
+	}
+
+	public void reset() {
+		for (Stage s : stages()) {
+			s.reset();
+		}
+	}
+
+	//One line per stage: in, out, % kept, approximate ms and bytes.  The stage that drops most for the least
+	//time belongs first; the one with the highest ms is where to look.
+	public String report() {
+		StringBuilder sb = new StringBuilder(String.format("%s%n", pipeline));
+		for (Stage s : stages()) {
+			sb.append(String.format("  %-24s in %10d  out %10d  kept %5.1f%%  ~%10.3f ms  ~%12d B%n", s.getStage(),
+			                        s.getElementsIn(), s.getElementsOut(), s.getPassRate() * 100,
+			                        s.getApproxNanos() / 1e6, s.getApproxAllocatedBytes()));
+		}
+		return sb.toString();
+	}
+
+	//What JMX shows for every stage
+	public interface StageMXBean {
+		String getPipeline();
+
+		String getStage();
+
+		long getElementsIn();
+
+		long getElementsOut();
+
+		long getDropped();
+
+		double getPassRate();
+
+		long getApproxNanos();
+
+		long getApproxAllocatedBytes();
+
+		void reset();
+	}
+
+	public static final class Stage implements StageMXBean {
+		private final String pipeline;
+		private final String name;
+		private final LongAdder in = new LongAdder();
+		private final LongAdder out = new LongAdder();
+		private final LongAdder samples = new LongAdder();
+		private final LongAdder sampledNanos = new LongAdder();
+		private final LongAdder sampledBytes = new LongAdder();
+		//Only decides which elements get sampled, so lost updates between threads don't matter
+		private int ticks;
+
+		Stage(String pipeline, String name) {
+			this.pipeline = pipeline;
+			this.name = name;
+		}
+
+		boolean sampleNext() {
+			return ++ticks % SAMPLE_EVERY == 0;
+		}
+
+		boolean counted(boolean passed) {
+			in.increment();
+			if (passed) {
+				out.increment();
+			}
+			return passed;
+		}
+
+		//This thread's allocated bytes so far, 0 without the HotSpot extension.  Read before the clock starts,
+		//so the counter's own cost isn't timed.
+		long threadBytes() {
+			return ALLOCATION == null ? 0 : ALLOCATION.getThreadAllocatedBytes(Thread.currentThread().getId());
+		}
+
+		//Adds one sample as a single delta, so a reader never sees half of it.  Called from a finally: a sample
+		//whose lambda threw still counts.
+		void endSample(long start, long bytes) {
+			sampledNanos.add(System.nanoTime() - start);
+			if (ALLOCATION != null) {
+				sampledBytes.add(threadBytes() - bytes);
+			}
+			samples.increment();
+		}
+
+		@Override
+		public String getPipeline() {
+			return pipeline;
+		}
+
+		@Override
+		public String getStage() {
+			return name;
+		}
+
+		@Override
+		public long getElementsIn() {
+			return in.sum();
+		}
+
+		@Override
+		public long getElementsOut() {
+			return out.sum();
+		}
+
+		@Override
+		public long getDropped() {
+			return in.sum() - out.sum();
+		}
+
+		@Override
+		public double getPassRate() {
+			long n = in.sum();
+			return n == 0 ? 0 : (double) out.sum() / n;
+		}
+
+		@Override
+		public long getApproxNanos() {
+			return extrapolate(sampledNanos.sum());
+		}
+
+		@Override
+		public long getApproxAllocatedBytes() {
+			return extrapolate(sampledBytes.sum());
+		}
+
+		@Override
+		public void reset() {
+			in.reset();
+			out.reset();
+			samples.reset();
+			sampledNanos.reset();
+			sampledBytes.reset();
+		}
+
+		private long extrapolate(long sampled) {
+			long n = samples.sum();
+			return n == 0 ? 0 : Math.round((double) sampled / n * in.sum());
+		}
+
+		private void register() {
+			try {
+				MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+				ObjectName objectName = new ObjectName(JMX_DOMAIN + ":pipeline=" + ObjectName.quote(pipeline)
+				                                       + ",stage=" + ObjectName.quote(name));
+				if (!server.isRegistered(objectName)) {
+					server.registerMBean(this, objectName);
+				}
+			} catch (JMException e) {
+				//Metrics are a convenience: a pipeline must never fail because JMX refused a bean
+			}
+		}
+
+		@Override
+		public String toString() {
+			return pipeline + "/" + name;
+		}
+	}
+
+	private static com.sun.management.ThreadMXBean allocationBean() {
+		ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		if (threads instanceof com.sun.management.ThreadMXBean
+		    && ((com.sun.management.ThreadMXBean) threads).isThreadAllocatedMemorySupported()) {
+			return (com.sun.management.ThreadMXBean) threads;
+		}
+		return null;
+	}
+}